@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils.benchmarks;
+
+import com.artglorin.web.utils.AsyncResourcesWriter;
+import com.artglorin.web.utils.ResourcesHelper;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Массовое сохранение небольших файлов в несколько папок: последовательные вызовы
+ * {@link ResourcesHelper#saveData(byte[], String...)} против {@link AsyncResourcesWriter}.
+ * Время указано на один файл.
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncResourcesWriterBenchmark {
+
+	private static final int FILES = 1000;
+
+	private static final int DIRECTORIES = 10;
+
+	@Param({"1", "4"})
+	public int writerThreads;
+
+	private Path folder;
+
+	private ResourcesHelper helper;
+
+	private AsyncResourcesWriter writer;
+
+	private byte[] data;
+
+	@Setup
+	public void setup () throws IOException {
+		folder = Files.createTempDirectory("AsyncResourcesWriterBenchmark");
+		helper = new ResourcesHelper("resources", ResourcesHelperBenchmark.servletContext(folder));
+		writer = new AsyncResourcesWriter(helper, 1024, writerThreads);
+		data = new byte[1024];
+		new Random(42).nextBytes(data);
+	}
+
+	@TearDown
+	public void tearDown () throws IOException {
+		writer.close();
+		FileUtils.deleteDirectory(folder.toFile());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FILES)
+	public void saveData () throws IOException {
+		for (int i = 0; i < FILES; i++) {
+			helper.saveData(data, "import", "folder" + i % DIRECTORIES, i + ".bin");
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FILES)
+	public void asyncWriter () throws InterruptedException {
+		CompletableFuture<?>[] results = new CompletableFuture<?>[FILES];
+		for (int i = 0; i < FILES; i++) {
+			results[i] = writer.submit(data, "import", "folder" + i % DIRECTORIES, i + ".bin");
+		}
+		CompletableFuture.allOf(results).join();
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils.benchmarks;
+
+import com.artglorin.web.utils.Pagination;
+import com.artglorin.web.utils.PaginationBuilder;
+import com.artglorin.web.utils.PaginationBuilderImpl;
+import com.artglorin.web.utils.PaginationFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Создание {@link Pagination} через {@link PaginationBuilderImpl#build()} для больших общих количеств элементов и
+ * разных размеров набора страниц. Текущая страница выбирается в середине диапазона.
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaginationBenchmark {
+
+	@Param({"1000", "1000000", "2147483647"})
+	public int totalItems;
+
+	@Param({"10", "1000", "100000"})
+	public int pagesInSet;
+
+	private PaginationBuilder builder;
+
+	private PaginationFactory cachedFactory;
+
+	private int page;
+
+	@Setup
+	public void setup () {
+		int totalPages = totalItems / PaginationBuilder.DEFAULT_LIST_SIZE + 1;
+		builder = PaginationBuilderImpl.getInstance()
+				.setTotalItemsCount(totalItems)
+				.setPagesCountInSet(pagesInSet)
+				.setCurrentPageNumber(totalPages / 2);
+		page = totalPages / 2;
+		cachedFactory = new PaginationFactory(PaginationBuilder.DEFAULT_LIST_SIZE, pagesInSet).withCache(1024);
+	}
+
+	@Benchmark
+	public Pagination build () {
+		return builder.build();
+	}
+
+	@Benchmark
+	public Pagination cachedFactory () {
+		return cachedFactory.of(totalItems, page);
+	}
+
+	@Benchmark
+	public int buildAndIterate () {
+		int sum = 0;
+		for (Integer page : builder.build().getSetPages()) {
+			sum += page;
+		}
+		return sum;
+	}
+}
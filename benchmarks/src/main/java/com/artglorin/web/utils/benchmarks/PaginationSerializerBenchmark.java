@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils.benchmarks;
+
+import com.artglorin.web.utils.Pagination;
+import com.artglorin.web.utils.PaginationFactory;
+import com.artglorin.web.utils.PaginationSerializer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение {@link PaginationSerializer} с сериализацией того же JSON через Jackson, как это обычно делается в REST
+ * контроллерах: данные нумерации копируются в объект ответа, который сериализуется рефлексией.
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaginationSerializerBenchmark {
+
+	private static final String TEMPLATE = "/api/items?sort=date&page={page}";
+
+	@Param({"10", "100"})
+	public int pagesInSet;
+
+	private Pagination pagination;
+
+	private PaginationSerializer serializer;
+
+	private ObjectMapper mapper;
+
+	private StringBuilder builder;
+
+	private ByteBuffer buffer;
+
+	@Setup
+	public void setup () {
+		pagination = new PaginationFactory(20, pagesInSet).of(1_000_000, 5_000);
+		serializer = new PaginationSerializer(TEMPLATE);
+		mapper = new ObjectMapper();
+		builder = new StringBuilder(16 * 1024);
+		buffer = ByteBuffer.allocateDirect(16 * 1024);
+	}
+
+	@Benchmark
+	public int serializerToStringBuilder () throws IOException {
+		builder.setLength(0);
+		serializer.appendJson(pagination, builder);
+		return builder.length();
+	}
+
+	@Benchmark
+	public int serializerToByteBuffer () {
+		buffer.clear();
+		return serializer.writeJson(pagination, buffer);
+	}
+
+	@Benchmark
+	public int serializerLinkHeader () throws IOException {
+		builder.setLength(0);
+		serializer.appendLinkHeader(pagination, builder);
+		return builder.length();
+	}
+
+	@Benchmark
+	public byte[] jackson () throws JsonProcessingException {
+		return mapper.writeValueAsBytes(new PaginationResponse(pagination));
+	}
+
+	/**
+	 * Объект ответа с теми же полями, что и JSON от {@link PaginationSerializer}
+	 */
+	public static class PaginationResponse {
+
+		public final int current;
+
+		public final int first;
+
+		public final int last;
+
+		public final int totalPages;
+
+		public final String previous;
+
+		public final String next;
+
+		public final String previousSet;
+
+		public final String nextSet;
+
+		public final List<Page> pages;
+
+		PaginationResponse (Pagination pagination) {
+			current = pagination.getCurrentPage();
+			first = pagination.getFirstPageInSet();
+			last = pagination.getLastPageInSet();
+			totalPages = pagination.getTotalPages();
+			previous = current > 1 ? url(current - 1) : null;
+			next = current < totalPages ? url(current + 1) : null;
+			previousSet = pagination.isExistPreviousSet() ? url(first - 1) : null;
+			nextSet = pagination.isExistNextSet() ? url(last + 1) : null;
+			pages = new ArrayList<>(pagination.getPagesCountInSet());
+			for (Integer page : pagination.getSetPages()) {
+				pages.add(new Page(page, url(page)));
+			}
+		}
+
+		private static String url (int page) {
+			return TEMPLATE.replace("{page}", Integer.toString(page));
+		}
+	}
+
+	public static class Page {
+
+		public final int page;
+
+		public final String url;
+
+		Page (int page, String url) {
+			this.page = page;
+			this.url = url;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils.benchmarks;
+
+import com.artglorin.web.utils.ResourcesHelper;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import javax.servlet.ServletContext;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись файлов разного размера через {@link ResourcesHelper#saveData(byte[], String...)} во временную папку.
+ * Запись в существующий файл и в новую папку измеряются отдельно, для прямой записи, атомарной записи и атомарной
+ * записи со сбросом на диск. Отдельно измеряется сохранение из потока и копирование из файла через
+ * {@link FileChannel#transferFrom(java.nio.channels.ReadableByteChannel, long, long)}.
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourcesHelperBenchmark {
+
+	@Param({"1024", "1048576", "16777216"})
+	public int size;
+
+	@Param({"direct", "atomic", "atomicSync"})
+	public String mode;
+
+	private Path folder;
+
+	private ResourcesHelper helper;
+
+	private byte[] data;
+
+	private long counter;
+
+	private String[] created;
+
+	private Path source;
+
+	@Setup
+	public void setup () throws IOException {
+		folder = Files.createTempDirectory("ResourcesHelperBenchmark");
+		helper = new ResourcesHelper("resources", servletContext(folder))
+				.setAtomicWrites(!mode.equals("direct"))
+				.setSyncWrites(mode.equals("atomicSync"));
+		data = new byte[size];
+		new Random(42).nextBytes(data);
+		source = Files.write(folder.resolve("source.bin"), data);
+	}
+
+	@TearDown
+	public void tearDown () throws IOException {
+		FileUtils.deleteDirectory(folder.toFile());
+	}
+
+	@Benchmark
+	public void overwriteFile () throws IOException {
+		helper.saveData(data, "data", "file.bin");
+	}
+
+	@Benchmark
+	public long overwriteFromStream () throws IOException {
+		return helper.saveData(new ByteArrayInputStream(data), "data", "file.bin");
+	}
+
+	@Benchmark
+	public long overwriteFromFile () throws IOException {
+		try (FileChannel channel = FileChannel.open(source)) {
+			return helper.saveData(channel, "data", "file.bin");
+		}
+	}
+
+	@Benchmark
+	public void createFile () throws IOException {
+		created = new String[]{"new", Long.toString(counter++)};
+		helper.saveData(data, created[0], created[1], "file.bin");
+	}
+
+	/**
+	 * Удаляет созданную папку после каждого вызова, чтобы большие файлы не заполнили диск.
+	 * Для {@link #overwriteFile()} ничего не делает.
+	 */
+	@TearDown(Level.Invocation)
+	public void deleteCreated () throws IOException {
+		if (created != null) {
+			helper.deleteResourcesDirectory(created);
+			created = null;
+		}
+	}
+
+	/**
+	 * Контекст сервлета, у которого реальный путь до любых ресурсов совпадает с указанной папкой
+	 */
+	static ServletContext servletContext (Path folder) {
+		return (ServletContext) Proxy.newProxyInstance(ServletContext.class.getClassLoader(), new Class<?>[]{ServletContext.class},
+				(proxy, method, args) -> {
+					if (method.getName().equals("getRealPath")) {
+						return folder.toString();
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils.benchmarks;
+
+import com.artglorin.web.utils.XmlByteExtractor;
+import com.artglorin.web.utils.exceptions.ExtractionException;
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Извлечение встроенных base64 данных из документа с разным количеством и размером вложений.
+ * Сравнивается извлечение из готового DOM и потоковое извлечение из байт документа.
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlByteExtractorBenchmark {
+
+	/**
+	 * Количество вложений в документе
+	 */
+	@Param({"1", "16", "64"})
+	public int assets;
+
+	/**
+	 * Размер каждого вложения в байтах до кодирования
+	 */
+	@Param({"256", "16384", "1048576"})
+	public int assetSize;
+
+	private byte[] xml;
+
+	private Document document;
+
+	@Setup
+	public void setup () throws ParserConfigurationException, IOException, SAXException {
+		Random random = new Random(42);
+		StringBuilder builder = new StringBuilder("<html><body>");
+		for (int i = 0; i < assets; i++) {
+			byte[] data = new byte[assetSize];
+			random.nextBytes(data);
+			builder.append("<p>text</p><img src=\"data:image/png;base64,")
+					.append(Base64.getEncoder().encodeToString(data))
+					.append("\"/>");
+		}
+		xml = builder.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+		document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+	}
+
+	@Benchmark
+	public List<XmlByteExtractor.Description> extractFromDocument () throws ExtractionException {
+		return new XmlByteExtractor(document).extractAll();
+	}
+
+	@Benchmark
+	public List<XmlByteExtractor.Description> extractFromStream () throws ExtractionException {
+		return new XmlByteExtractor(new ByteArrayInputStream(xml)).extractAll();
+	}
+}
@@ -0,0 +1,305 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>Асинхронная запись файлов через {@link ResourcesHelper}. Потоки обработки запросов только ставят данные в
+ * ограниченную очередь, а запись выполняют отдельные потоки. Подходит для массового импорта, когда нужно сохранить
+ * тысячи небольших файлов.</p>
+ * <p>Потоки записи забирают задачи из очереди пачками и группируют их по папкам: каждая папка пачки создается один раз,
+ * после чего все ее файлы записываются подряд. Папки, которые уже создавал {@link ResourcesHelper}, не создаются
+ * повторно. Если очередь заполнена, добавление задачи ждет освобождения места.</p>
+ * <p>После {@link #close()} каждая принятая задача либо записывается, либо завершается исключением: проверка закрытия
+ * и добавление в очередь выполняются под одной блокировкой с закрытием.</p>
+ * <p>Файлы одной папки записываются в порядке добавления, если поток записи один. При нескольких потоках порядок записи
+ * в один и тот же файл не гарантируется.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public class AsyncResourcesWriter implements Closeable {
+
+	/**
+	 * Максимальное количество задач, которые поток записи забирает из очереди за один раз
+	 */
+	private static final int BATCH_SIZE = 256;
+
+	/**
+	 * Метка конца очереди. Ставится при закрытии после всех задач, поток записи, получивший ее, возвращает ее в очередь
+	 * для следующего потока и завершается.
+	 */
+	private static final Task STOP = new Task(new byte[0], null);
+
+	private final ResourcesHelper helper;
+
+	private final BlockingQueue<Task> queue;
+
+	private final Thread[] writers;
+
+	private final LongAdder written = new LongAdder();
+
+	private final LongAdder batches = new LongAdder();
+
+	private final LongAdder directories = new LongAdder();
+
+	/**
+	 * Добавление задач берет общую блокировку, закрытие - исключительную. Так после установки closed в очередь
+	 * не может попасть ни одной задачи.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private boolean closed;
+
+	/**
+	 * @param helper        через который выполняется запись, не может быть null
+	 * @param queueCapacity максимальное количество задач, ожидающих записи
+	 * @param writerThreads количество потоков записи
+	 */
+	public AsyncResourcesWriter (ResourcesHelper helper, int queueCapacity, int writerThreads) {
+		if (helper == null) {
+			throw new IllegalArgumentException("Required argument helper is null");
+		}
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+		}
+		if (writerThreads < 1) {
+			throw new IllegalArgumentException("Writer threads count must be positive: " + writerThreads);
+		}
+		this.helper = helper;
+		queue = new ArrayBlockingQueue<>(queueCapacity);
+		writers = new Thread[writerThreads];
+		for (int i = 0; i < writers.length; i++) {
+			writers[i] = new Thread(this::run, "resources-writer-" + i);
+			writers[i].setDaemon(true);
+			writers[i].start();
+		}
+	}
+
+	/**
+	 * Ставит данные в очередь на запись. Если очередь заполнена, ждет освобождения места.
+	 *
+	 * @param data данные, которые нужно записать. Массив нельзя изменять до завершения записи.
+	 * @param path путь до файла, так же как в {@link ResourcesHelper#saveData(byte[], String...)}
+	 * @return результат записи: количество записанных байт или исключение {@link IOException}
+	 * @throws InterruptedException  если поток был прерван во время ожидания
+	 * @throws IllegalStateException если писатель закрыт
+	 */
+	public CompletableFuture<Long> submit (byte[] data, String... path) throws InterruptedException {
+		Task task = task(data, path);
+		lock.readLock().lockInterruptibly();
+		try {
+			checkOpen();
+			queue.put(task);
+		} finally {
+			lock.readLock().unlock();
+		}
+		return task.result;
+	}
+
+	/**
+	 * Ставит данные в очередь на запись, ожидая освобождения места не дольше указанного времени
+	 *
+	 * @param data    данные, которые нужно записать. Массив нельзя изменять до завершения записи.
+	 * @param timeout сколько можно ждать
+	 * @param unit    единица измерения timeout
+	 * @param path    путь до файла, так же как в {@link ResourcesHelper#saveData(byte[], String...)}
+	 * @return результат записи или null, если место в очереди так и не освободилось
+	 * @throws InterruptedException  если поток был прерван во время ожидания
+	 * @throws IllegalStateException если писатель закрыт
+	 */
+	public CompletableFuture<Long> offer (byte[] data, long timeout, TimeUnit unit, String... path) throws InterruptedException {
+		Task task = task(data, path);
+		lock.readLock().lockInterruptibly();
+		try {
+			checkOpen();
+			return queue.offer(task, timeout, unit) ? task.result : null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return количество задач, ожидающих записи
+	 */
+	public int getQueueSize () {
+		return queue.size();
+	}
+
+	/**
+	 * @return количество успешно записанных файлов
+	 */
+	public long getWrittenCount () {
+		return written.sum();
+	}
+
+	/**
+	 * @return количество пачек, которые обработали потоки записи
+	 */
+	public long getBatchesCount () {
+		return batches.sum();
+	}
+
+	/**
+	 * @return количество обращений к файловой системе для создания папок. Чем оно меньше количества записанных файлов,
+	 * тем лучше работает группировка и кеш папок {@link ResourcesHelper}.
+	 */
+	public long getDirectoriesCount () {
+		return directories.sum();
+	}
+
+	/**
+	 * Прекращает прием новых задач, дожидается записи всех задач из очереди и останавливает потоки записи
+	 *
+	 * @throws IOException если поток был прерван во время ожидания
+	 */
+	@Override
+	public void close () throws IOException {
+		boolean stop;
+		// Ждем, пока добавляемые сейчас задачи попадут в очередь. Потоки записи продолжают работать, поэтому
+		// ожидание места в очереди закончится
+		lock.writeLock().lock();
+		try {
+			stop = !closed;
+			closed = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		try {
+			if (stop) {
+				queue.put(STOP);
+			}
+			for (Thread writer : writers) {
+				writer.join();
+			}
+			// В очереди осталась только метка конца
+			queue.remove(STOP);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for pending writes", e);
+		}
+	}
+
+	private Task task (byte[] data, String[] path) {
+		if (data == null) {
+			throw new IllegalArgumentException("Required argument data is null");
+		}
+		if (path.length == 0) {
+			throw new IllegalArgumentException("Required argument path is empty");
+		}
+		return new Task(data, helper.createRealPath(path));
+	}
+
+	/**
+	 * Вызывается под общей блокировкой
+	 */
+	private void checkOpen () {
+		if (closed) {
+			throw new IllegalStateException("Writer is closed");
+		}
+	}
+
+	private void run () {
+		List<Task> batch = new ArrayList<>(BATCH_SIZE);
+		Map<Path, List<Task>> byDirectory = new LinkedHashMap<>();
+		boolean stop = false;
+		while (!stop) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				// Поток записи завершается только по метке конца очереди, иначе задачи остались бы незавершенными
+				continue;
+			}
+			queue.drainTo(batch, BATCH_SIZE - 1);
+			// Метка ставится последней, поэтому может быть только в конце пачки
+			if (batch.get(batch.size() - 1) == STOP) {
+				batch.remove(batch.size() - 1);
+				stop = true;
+			}
+			for (Task task : batch) {
+				byDirectory.computeIfAbsent(task.file.getParent(), directory -> new ArrayList<>()).add(task);
+			}
+			for (Map.Entry<Path, List<Task>> entry : byDirectory.entrySet()) {
+				write(entry.getKey(), entry.getValue());
+			}
+			if (!batch.isEmpty()) {
+				batches.increment();
+			}
+			batch.clear();
+			byDirectory.clear();
+		}
+		// Место в очереди есть: задачи больше не добавляются, а метку только что забрали
+		queue.offer(STOP);
+	}
+
+	/**
+	 * Создает папку один раз и записывает все ее файлы
+	 */
+	private void write (Path directory, List<Task> tasks) {
+		try {
+			if (helper.ensureDirectory(directory)) {
+				directories.increment();
+			}
+		} catch (IOException e) {
+			for (Task task : tasks) {
+				task.result.completeExceptionally(e);
+			}
+			return;
+		}
+		for (Task task : tasks) {
+			try (ResourcesHelper.Output output = helper.openOutput(task.file)) {
+				long size = ResourcesHelper.write(ByteBuffer.wrap(task.data), output);
+				written.increment();
+				task.result.complete(size);
+			} catch (IOException | RuntimeException e) {
+				task.result.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Задача записи одного файла
+	 */
+	private static final class Task {
+
+		private final byte[] data;
+
+		private final Path file;
+
+		private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+		private Task (byte[] data, Path file) {
+			this.data = data;
+			this.file = file;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+/**
+ * <p>Нумерация для постраничного вывода по ключу. Вместо номеров страниц содержит непрозрачные курсоры для перехода на
+ * соседние страницы, общее количество элементов не требуется.</p>
+ * <p>Страница здесь играет роль набора из {@link Pagination}: {@link #isExistNextSet()} и
+ * {@link #isExistPreviousSet()} сообщают, есть ли элементы после и перед текущей страницей.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ * @see CursorPaginationBuilder
+ * @see PageCursor
+ */
+public interface CursorPagination {
+
+	/**
+	 * @return позицию, по которой была получена текущая страница, или null для первой страницы
+	 */
+	PageCursor getCursor ();
+
+	/**
+	 * @return курсор для перехода на следующую страницу или null, если ее нет
+	 */
+	String getNextCursor ();
+
+	/**
+	 * @return курсор для перехода на предыдущую страницу или null, если ее нет
+	 */
+	String getPreviousCursor ();
+
+	/**
+	 * @return количество элементов на странице
+	 */
+	int getItemsListSize ();
+
+	/**
+	 * @return true если существует следующая страница
+	 */
+	boolean isExistNextSet ();
+
+	/**
+	 * @return true если существует предыдущая страница
+	 */
+	boolean isExistPreviousSet ();
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+/**
+ * <p>Интерфейс для настройки и создания реализации интерфейса {@link CursorPagination}. Создается через
+ * {@link PaginationBuilder#cursorBased()}.</p>
+ * <p>Порядок работы:</p>
+ * <ol>
+ * <li>передать курсор из запроса пользователя в {@link #setCursor(String)};</li>
+ * <li>выполнить запрос к данным по {@link #getCursor()}, выбрав {@link #getFetchSize()} элементов. Лишний элемент
+ * показывать не нужно, он означает, что в направлении перехода есть еще страница;</li>
+ * <li>передать количество выбранных элементов и ключи первого и последнего показываемых элементов;</li>
+ * <li>вызвать {@link #build()}.</li>
+ * </ol>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ * @see CursorPagination
+ */
+public interface CursorPaginationBuilder {
+
+	/**
+	 * Создать новый {@link CursorPagination} с текущими настройками
+	 *
+	 * @return новый экземпляр реализации интерфейса {@link CursorPagination}
+	 */
+	CursorPagination build ();
+
+	/**
+	 * Устанавливает количество отображаемых элементов на каждой странице
+	 *
+	 * @param listSize количество элементов на странице
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	CursorPaginationBuilder setItemsListSize (int listSize);
+
+	/**
+	 * Устанавливает курсор текущей страницы
+	 *
+	 * @param cursor строка от {@link CursorPagination#getNextCursor()} или {@link CursorPagination#getPreviousCursor()},
+	 *               null или пустая строка для первой страницы
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 * @throws IllegalArgumentException если строка не является курсором
+	 */
+	CursorPaginationBuilder setCursor (String cursor);
+
+	/**
+	 * @return позицию текущей страницы для построения запроса или null для первой страницы
+	 */
+	PageCursor getCursor ();
+
+	/**
+	 * @return сколько элементов нужно выбрать из источника данных: на один больше размера страницы
+	 */
+	int getFetchSize ();
+
+	/**
+	 * Устанавливает количество элементов, которое вернул запрос, выполненный по {@link #getFetchSize()}
+	 *
+	 * @param fetchedItemsCount количество выбранных элементов
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	CursorPaginationBuilder setFetchedItemsCount (int fetchedItemsCount);
+
+	/**
+	 * Устанавливает ключи сортировки первого показываемого элемента страницы
+	 *
+	 * @param keys значения ключей в порядке сортировки
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 * @throws IllegalArgumentException если ключей нет или среди них есть null
+	 */
+	CursorPaginationBuilder setFirstItemKeys (String... keys);
+
+	/**
+	 * Устанавливает ключи сортировки последнего показываемого элемента страницы
+	 *
+	 * @param keys значения ключей в порядке сортировки
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 * @throws IllegalArgumentException если ключей нет или среди них есть null
+	 */
+	CursorPaginationBuilder setLastItemKeys (String... keys);
+}
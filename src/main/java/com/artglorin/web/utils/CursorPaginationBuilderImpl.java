@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+/**
+ * Реализация интерфейса {@link CursorPaginationBuilder}
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ * @see CursorPaginationBuilder
+ */
+public class CursorPaginationBuilderImpl implements CursorPaginationBuilder {
+
+	private int listSize = PaginationBuilder.DEFAULT_LIST_SIZE;
+
+	private PageCursor cursor;
+
+	private int fetchedCount;
+
+	private String[] firstKeys;
+
+	private String[] lastKeys;
+
+	private CursorPaginationBuilderImpl () {
+	}
+
+	/**
+	 * @return новый экземпляр класса
+	 */
+	public static CursorPaginationBuilder getInstance () {
+		return new CursorPaginationBuilderImpl();
+	}
+
+	@Override
+	public CursorPaginationBuilder setItemsListSize (int listSize) {
+		this.listSize = listSize > 0 ? listSize : 1;
+		return this;
+	}
+
+	@Override
+	public CursorPaginationBuilder setCursor (String cursor) {
+		this.cursor = cursor == null || cursor.isEmpty() ? null : PageCursor.decode(cursor);
+		return this;
+	}
+
+	@Override
+	public PageCursor getCursor () {
+		return cursor;
+	}
+
+	@Override
+	public int getFetchSize () {
+		return listSize + 1;
+	}
+
+	@Override
+	public CursorPaginationBuilder setFetchedItemsCount (int fetchedItemsCount) {
+		this.fetchedCount = fetchedItemsCount >= 0 ? fetchedItemsCount : 0;
+		return this;
+	}
+
+	@Override
+	public CursorPaginationBuilder setFirstItemKeys (String... keys) {
+		this.firstKeys = checkKeys(keys);
+		return this;
+	}
+
+	@Override
+	public CursorPaginationBuilder setLastItemKeys (String... keys) {
+		this.lastKeys = checkKeys(keys);
+		return this;
+	}
+
+	@Override
+	public CursorPagination build () {
+		// Лишний выбранный элемент означает, что в направлении перехода есть еще страница
+		boolean more = fetchedCount > listSize;
+		boolean backward = cursor != null && cursor.getDirection() == PageCursor.Direction.PREVIOUS;
+		boolean nextSet = backward || more;
+		boolean previousSet = backward ? more : cursor != null;
+		// На пустой странице не от чего строить курсоры
+		if (fetchedCount == 0 || firstKeys == null || lastKeys == null) {
+			nextSet = false;
+			previousSet = false;
+		}
+		return new CursorPaginationImpl(cursor, listSize,
+				nextSet ? new PageCursor(PageCursor.Direction.NEXT, lastKeys).encode() : null,
+				previousSet ? new PageCursor(PageCursor.Direction.PREVIOUS, firstKeys).encode() : null);
+	}
+
+	/**
+	 * Проверяет ключи сразу, а не при построении курсора в {@link #build()}, чтобы ошибка указывала на место установки
+	 */
+	private static String[] checkKeys (String[] keys) {
+		if (keys == null || keys.length == 0) {
+			throw new IllegalArgumentException("Required argument keys is empty");
+		}
+		for (String key : keys) {
+			if (key == null) {
+				throw new IllegalArgumentException("Required argument keys contains null");
+			}
+		}
+		return keys.clone();
+	}
+}
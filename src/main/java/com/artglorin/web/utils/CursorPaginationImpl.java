@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+/**
+ * Реализация интерфейса {@link CursorPagination}
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public class CursorPaginationImpl implements CursorPagination {
+
+	private final PageCursor cursor;
+
+	private final int listSize;
+
+	private final String nextCursor;
+
+	private final String previousCursor;
+
+	/**
+	 * @param cursor         позиция текущей страницы, null для первой страницы
+	 * @param listSize       количество элементов на странице
+	 * @param nextCursor     курсор следующей страницы или null
+	 * @param previousCursor курсор предыдущей страницы или null
+	 */
+	CursorPaginationImpl (PageCursor cursor, int listSize, String nextCursor, String previousCursor) {
+		this.cursor = cursor;
+		this.listSize = listSize;
+		this.nextCursor = nextCursor;
+		this.previousCursor = previousCursor;
+	}
+
+	@Override
+	public PageCursor getCursor () {
+		return cursor;
+	}
+
+	@Override
+	public String getNextCursor () {
+		return nextCursor;
+	}
+
+	@Override
+	public String getPreviousCursor () {
+		return previousCursor;
+	}
+
+	@Override
+	public int getItemsListSize () {
+		return listSize;
+	}
+
+	@Override
+	public boolean isExistNextSet () {
+		return nextCursor != null;
+	}
+
+	@Override
+	public boolean isExistPreviousSet () {
+		return previousCursor != null;
+	}
+}
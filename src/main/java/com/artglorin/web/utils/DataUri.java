@@ -0,0 +1,309 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import com.artglorin.web.utils.exceptions.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Разобранный источник данных вида "data:image/png;base64,iVBORw0K".</p>
+ * <p>Заголовок разбирается по индексам, а данные декодируются напрямую из символов исходной строки, без создания
+ * промежуточных строк и массивов. При декодировании в массив выделяется ровно один массив нужного размера.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public final class DataUri {
+
+	/**
+	 * Количество символов, которые декодируются за один раз при записи в поток
+	 */
+	private static final int CHUNK_CHARS = 8192;
+
+	private static final byte[] DECODE_TABLE = new byte[128];
+
+	/**
+	 * Допустимые тип и расширение. Из них строятся пути файлов, поэтому разделители путей и ".." не допускаются.
+	 */
+	private static final Pattern TOKEN = Pattern.compile("[A-Za-z0-9+-][A-Za-z0-9.+-]*");
+
+	static {
+		for (int i = 0; i < DECODE_TABLE.length; i++) {
+			DECODE_TABLE[i] = -1;
+		}
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		for (int i = 0; i < alphabet.length(); i++) {
+			DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+		}
+	}
+
+	private final String value;
+
+	private final String type;
+
+	private final String extension;
+
+	/**
+	 * Индекс первого символа данных
+	 */
+	private final int dataStart;
+
+	private DataUri (String value, String type, String extension, int dataStart) {
+		this.value = value;
+		this.type = type;
+		this.extension = extension;
+		this.dataStart = dataStart;
+	}
+
+	/**
+	 * Разбирает заголовок источника данных. Сами данные на этом этапе не декодируются.
+	 *
+	 * @param value строка вида "data:image/png;base64,iVBORw0K"
+	 * @return разобранный источник данных
+	 * @throws InvalidTypeException        если не удалось определить тип данных или он содержит недопустимые символы
+	 * @throws InvalidExtensionException   если не удалось определить расширение или оно содержит недопустимые символы
+	 * @throws InvalidDecodeTypeException  если не указан или не поддерживается способ кодирования
+	 * @throws UnsupportedFormatException  если строка не начинается с "data:"
+	 */
+	public static DataUri parse (String value) throws ExtractionException {
+		if (!value.startsWith("data:")) {
+			throw new UnsupportedFormatException(value);
+		}
+		int colon = value.indexOf(':');
+		int slash = value.indexOf('/');
+		int semicolon = value.indexOf(';');
+		int comma = value.indexOf(',');
+		if (slash < colon + 1) {
+			throw new InvalidTypeException(value);
+		}
+		if (semicolon < slash + 1) {
+			throw new InvalidExtensionException(value);
+		}
+		if (comma < semicolon + 1) {
+			throw new InvalidDecodeTypeException(value);
+		}
+		if (comma - semicolon - 1 != 6 || !value.startsWith("base64", semicolon + 1)) {
+			throw new InvalidDecodeTypeException(value.substring(semicolon + 1, comma));
+		}
+		String type = value.substring(colon + 1, slash);
+		if (!isToken(type)) {
+			throw new InvalidTypeException(value);
+		}
+		String extension = value.substring(slash + 1, semicolon);
+		if (!isToken(extension)) {
+			throw new InvalidExtensionException(value);
+		}
+		return new DataUri(value, type, extension, comma + 1);
+	}
+
+	/**
+	 * Проверяет тип или расширение данных, полученные из документа или от сервера. Такие значения могут попасть в путь
+	 * файла, поэтому допускаются только буквы, цифры и символы ".", "+", "-", без ".." и точки в начале.
+	 *
+	 * @param value тип или расширение
+	 * @return true если значение допустимо
+	 */
+	static boolean isToken (String value) {
+		return value != null && TOKEN.matcher(value).matches() && !value.contains("..");
+	}
+
+	/**
+	 * @return тип данных image, audio, video
+	 */
+	public String getType () {
+		return type;
+	}
+
+	/**
+	 * @return строку расширение файла
+	 */
+	public String getExtension () {
+		return extension;
+	}
+
+	/**
+	 * @return количество закодированных символов данных
+	 */
+	public int getEncodedLength () {
+		return value.length() - dataStart;
+	}
+
+	/**
+	 * Вычисляет размер декодированных данных без их декодирования
+	 *
+	 * @return количество байт, которое будет получено при декодировании
+	 * @throws DecodeException если длина данных не соответствует Base64
+	 */
+	public int getDecodedLength () throws DecodeException {
+		int length = getEncodedLength();
+		int padding = padding();
+		if (padding > 0) {
+			if (length % 4 != 0) {
+				throw new DecodeException("Input has wrong 4-byte ending unit");
+			}
+			return length / 4 * 3 - padding;
+		}
+		if (length % 4 == 1) {
+			throw new DecodeException("Last unit does not have enough valid bits");
+		}
+		return length / 4 * 3 + (length % 4 == 0 ? 0 : length % 4 - 1);
+	}
+
+	/**
+	 * Декодирует данные в новый массив точного размера
+	 *
+	 * @return массив декодированных данных
+	 * @throws DecodeException если данные не являются корректной Base64 строкой
+	 */
+	public byte[] decode () throws DecodeException {
+		byte[] result = new byte[getDecodedLength()];
+		decode(dataStart, value.length() - padding(), result, 0);
+		return result;
+	}
+
+	/**
+	 * Декодирует данные в переданный буфер начиная с его текущей позиции.
+	 * Если буфер не является прямым, данные пишутся сразу в его массив.
+	 *
+	 * @param target буфер, в котором должно быть не меньше {@link #getDecodedLength()} свободных байт
+	 * @return количество записанных байт
+	 * @throws DecodeException если данные не являются корректной Base64 строкой или в буфере недостаточно места
+	 */
+	public int decode (ByteBuffer target) throws DecodeException {
+		int length = getDecodedLength();
+		if (target.remaining() < length) {
+			throw new DecodeException("Not enough space in buffer: required " + length + ", remaining " + target.remaining());
+		}
+		if (target.hasArray()) {
+			decode(dataStart, value.length() - padding(), target.array(), target.arrayOffset() + target.position());
+			// Вызов через Buffer: ByteBuffer.position(int) появился в JDK 9, а библиотека должна работать в JDK 8
+			((Buffer) target).position(target.position() + length);
+			return length;
+		}
+		byte[] chunk = new byte[Math.min(CHUNK_CHARS / 4 * 3, length)];
+		int end = value.length() - padding();
+		int to;
+		for (int from = dataStart; from < end; from = to) {
+			to = Math.min(from + CHUNK_CHARS, end);
+			target.put(chunk, 0, decode(from, to, chunk, 0));
+		}
+		return length;
+	}
+
+	/**
+	 * Декодирует данные в поток небольшими частями, не создавая массив под все данные
+	 *
+	 * @param out поток в который нужно записать данные. Поток не закрывается.
+	 * @return количество записанных байт
+	 * @throws DecodeException если данные не являются корректной Base64 строкой
+	 * @throws IOException     если не удалось записать данные в поток
+	 */
+	public long decode (OutputStream out) throws DecodeException, IOException {
+		int length = getDecodedLength();
+		byte[] chunk = new byte[Math.min(CHUNK_CHARS / 4 * 3, length)];
+		int end = value.length() - padding();
+		int to;
+		for (int from = dataStart; from < end; from = to) {
+			to = Math.min(from + CHUNK_CHARS, end);
+			out.write(chunk, 0, decode(from, to, chunk, 0));
+		}
+		return length;
+	}
+
+	/**
+	 * Вычисляет SHA-256 от закодированных данных без их декодирования и без копирования строки
+	 *
+	 * @return хеш закодированных данных или null, если данные содержат символы вне ASCII и заведомо некорректны
+	 */
+	public byte[] digest () {
+		MessageDigest digest = Digests.sha256();
+		byte[] chunk = new byte[Math.min(CHUNK_CHARS, getEncodedLength())];
+		int size = 0;
+		char c;
+		for (int i = dataStart; i < value.length(); i++) {
+			c = value.charAt(i);
+			if (c > 0x7F) {
+				return null;
+			}
+			chunk[size++] = (byte) c;
+			if (size == chunk.length) {
+				digest.update(chunk, 0, size);
+				size = 0;
+			}
+		}
+		digest.update(chunk, 0, size);
+		return digest.digest();
+	}
+
+	/**
+	 * @return количество символов дополнения '=' в конце данных
+	 */
+	private int padding () {
+		int end = value.length();
+		if (end > dataStart && value.charAt(end - 1) == '=') {
+			return end - 1 > dataStart && value.charAt(end - 2) == '=' ? 2 : 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Декодирует символы исходной строки в массив. Все части кроме последней должны быть кратны 4 символам.
+	 *
+	 * @param from индекс первого символа
+	 * @param to   индекс после последнего символа без учета дополнения
+	 * @param dst  массив в который нужно записать данные
+	 * @param dp   позиция в массиве
+	 * @return количество записанных байт
+	 * @throws DecodeException если встретился недопустимый символ
+	 */
+	private int decode (int from, int to, byte[] dst, int dp) throws DecodeException {
+		int start = dp;
+		int bits = 0;
+		int count = 0;
+		char c;
+		int b;
+		for (int i = from; i < to; i++) {
+			c = value.charAt(i);
+			if (c >= DECODE_TABLE.length || (b = DECODE_TABLE[c]) < 0) {
+				throw new DecodeException("Illegal base64 character " + Integer.toString(c, 16));
+			}
+			bits = bits << 6 | b;
+			if (++count == 4) {
+				dst[dp++] = (byte) (bits >> 16);
+				dst[dp++] = (byte) (bits >> 8);
+				dst[dp++] = (byte) bits;
+				bits = 0;
+				count = 0;
+			}
+		}
+		if (count == 2) {
+			dst[dp++] = (byte) (bits >> 4);
+		} else if (count == 3) {
+			dst[dp++] = (byte) (bits >> 10);
+			dst[dp++] = (byte) (bits >> 2);
+		} else if (count == 1) {
+			throw new DecodeException("Last unit does not have enough valid bits");
+		}
+		return dp - start;
+	}
+}
@@ -0,0 +1,357 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Устраняет повторное декодирование одинаковых встроенных данных вида "data:image/png;base64,...".</p>
+ * <p>Одинаковые данные декодируются один раз, а все описатели получают один и тот же массив байт и ссылку на
+ * описатель, с которым они разделяют данные. Один экземпляр можно использовать в нескольких документах и потоках,
+ * тогда данные разделяются и между документами.</p>
+ * <p>Данные, извлеченные в память, и данные, записанные в файлы хранилища, запоминаются отдельно: описатель всегда
+ * получает данные в том виде, в котором их извлекает текущее извлечение. Файлы разделяются только внутри одного
+ * извлечения: следующий документ может записать в тот же файл другие данные, поэтому после окончания извлечения
+ * запомненные пути забываются.</p>
+ * <p>Запоминаются только сами данные, а не описатели, поэтому документы и извлекатели не удерживаются в памяти.
+ * Количество и общий размер запомненных данных ограничены, при превышении забываются давно не использованные.</p>
+ * <p>Так как описатели разделяют массив, изменять массив данных нельзя.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ * @see XmlByteExtractor#setDeduplicator(DataUriDeduplicator)
+ * @see XmlByteExtractor.Description#getOriginal()
+ */
+public class DataUriDeduplicator {
+
+	/**
+	 * Максимальное количество запоминаемых данных по умолчанию
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+	/**
+	 * Максимальный общий размер запоминаемых данных по умолчанию, 64 МБ
+	 */
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	/**
+	 * Способ сравнения данных
+	 */
+	public enum Mode {
+
+		/**
+		 * Сравниваются хеши закодированных строк. Повтор обнаруживается без декодирования.
+		 */
+		ENCODED,
+
+		/**
+		 * Дополнительно сравниваются хеши декодированных данных. Позволяет разделять одинаковые данные, которые
+		 * закодированы по разному, например с дополнением и без, но такие данные декодируются каждый раз.
+		 */
+		DECODED
+	}
+
+	private final Mode mode;
+
+	private final int maxEntries;
+
+	private final long maxBytes;
+
+	/**
+	 * Запомненные данные в порядке использования, доступ только под блокировкой самой карты
+	 */
+	private final LinkedHashMap<Key, Shared> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long retainedBytes;
+
+	private final LongAdder shared = new LongAdder();
+
+	private final LongAdder sharedBytes = new LongAdder();
+
+	/**
+	 * Создает экземпляр, сравнивающий закодированные строки и запоминающий до {@link #DEFAULT_MAX_ENTRIES} данных
+	 * общим размером до {@link #DEFAULT_MAX_BYTES}
+	 */
+	public DataUriDeduplicator () {
+		this(Mode.ENCODED, DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param mode       способ сравнения данных
+	 * @param maxEntries максимальное количество запоминаемых данных
+	 * @see #DataUriDeduplicator(Mode, int, long)
+	 */
+	public DataUriDeduplicator (Mode mode, int maxEntries) {
+		this(mode, maxEntries, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * @param mode       способ сравнения данных
+	 * @param maxEntries максимальное количество запоминаемых данных
+	 * @param maxBytes   максимальный общий размер данных, которые удерживаются в памяти. Данные, записанные в файлы,
+	 *                   в памяти не хранятся и не учитываются. Когда любой из пределов превышен, забываются давно не
+	 *                   использованные данные, а уже созданные описатели продолжают их разделять.
+	 */
+	public DataUriDeduplicator (Mode mode, int maxEntries, long maxBytes) {
+		if (mode == null) {
+			throw new IllegalArgumentException("Required argument mode is null");
+		}
+		this.mode = mode;
+		this.maxEntries = maxEntries > 0 ? maxEntries : 1;
+		this.maxBytes = maxBytes > 0 ? maxBytes : 0;
+	}
+
+	/**
+	 * @return способ сравнения данных
+	 */
+	public Mode getMode () {
+		return mode;
+	}
+
+	/**
+	 * @return максимальный общий размер данных, которые удерживаются в памяти
+	 */
+	public long getMaxBytes () {
+		return maxBytes;
+	}
+
+	/**
+	 * @return общий размер данных, которые сейчас удерживаются в памяти
+	 */
+	public long getRetainedBytes () {
+		synchronized (entries) {
+			return retainedBytes;
+		}
+	}
+
+	/**
+	 * @return сколько раз данные были разделены вместо повторного создания
+	 */
+	public long getSharedCount () {
+		return shared.sum();
+	}
+
+	/**
+	 * @return сколько байт не пришлось хранить повторно благодаря разделению данных
+	 */
+	public long getSharedBytes () {
+		return sharedBytes.sum();
+	}
+
+	/**
+	 * Забывает все запомненные данные. Уже созданные описатели продолжают разделять свои массивы.
+	 */
+	public void clear () {
+		synchronized (entries) {
+			for (Shared value : entries.values()) {
+				value.keys = 0;
+			}
+			entries.clear();
+			retainedBytes = 0;
+		}
+	}
+
+	/**
+	 * @param encodedDigest хеш закодированных данных
+	 * @param scope         извлечение, которое записывает данные в файлы, или null, если данные извлекаются в память
+	 * @return ранее запомненные такие же данные, извлеченные тем же способом, или null
+	 */
+	Shared findEncoded (byte[] encodedDigest, Object scope) {
+		synchronized (entries) {
+			return share(entries.get(new Key(encodedDigest, false, scope)));
+		}
+	}
+
+	/**
+	 * Забывает данные, запомненные для извлечения. Вызывается после окончания извлечения в файлы, так как файлы могут
+	 * быть перезаписаны следующими извлечениями.
+	 *
+	 * @param scope извлечение, которое записывало данные в файлы
+	 */
+	void release (Object scope) {
+		synchronized (entries) {
+			Iterator<Map.Entry<Key, Shared>> iterator = entries.entrySet().iterator();
+			Map.Entry<Key, Shared> entry;
+			while (iterator.hasNext()) {
+				entry = iterator.next();
+				if (entry.getKey().scope == scope) {
+					iterator.remove();
+					removed(entry.getValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Запоминает данные описателя как первые с таким содержимым. Если в режиме {@link Mode#DECODED} такие же
+	 * декодированные данные уже встречались, или другой поток успел запомнить такие же данные, возвращает ранее
+	 * запомненные данные.
+	 *
+	 * @param encodedDigest хеш закодированных данных, может быть null
+	 * @param scope         извлечение, которое записало данные в файл, или null, если данные извлечены в память
+	 * @param description   описатель с данными. Для данных, записанных сразу в файл, сравнение по декодированным
+	 *                      данным не выполняется.
+	 * @return ранее запомненные такие же данные или null, если данные описателя запомнены как первые
+	 */
+	Shared register (byte[] encodedDigest, Object scope, XmlByteExtractor.Description description) {
+		Shared value = new Shared(description);
+		Shared original = null;
+		synchronized (entries) {
+			if (mode == Mode.DECODED && description.getData() != null) {
+				Key decodedKey = new Key(Digests.sha256().digest(description.getData()), true, scope);
+				original = entries.get(decodedKey);
+				if (original == null) {
+					put(decodedKey, value);
+				}
+			}
+			if (encodedDigest != null) {
+				Key encodedKey = new Key(encodedDigest, false, scope);
+				Shared encoded = entries.get(encodedKey);
+				if (encoded == null) {
+					put(encodedKey, original != null ? original : value);
+				} else if (original == null) {
+					original = encoded;
+				}
+			}
+			evict();
+			return share(original);
+		}
+	}
+
+	/**
+	 * В режиме {@link Mode#DECODED} одни данные запоминаются под двумя ключами, но учитываются один раз
+	 */
+	private void put (Key key, Shared value) {
+		entries.put(key, value);
+		if (value.keys++ == 0) {
+			retainedBytes += value.getRetainedBytes();
+		}
+	}
+
+	private void removed (Shared value) {
+		if (--value.keys == 0) {
+			retainedBytes -= value.getRetainedBytes();
+		}
+	}
+
+	/**
+	 * Забывает давно не использованные данные, пока не будут соблюдены пределы
+	 */
+	private void evict () {
+		Iterator<Map.Entry<Key, Shared>> iterator = entries.entrySet().iterator();
+		Shared value;
+		while ((entries.size() > maxEntries || retainedBytes > maxBytes) && iterator.hasNext()) {
+			value = iterator.next().getValue();
+			iterator.remove();
+			removed(value);
+		}
+	}
+
+	private Shared share (Shared original) {
+		if (original != null) {
+			shared.increment();
+			sharedBytes.add(original.size);
+		}
+		return original;
+	}
+
+	/**
+	 * Ключ запомненных данных: хеш закодированной строки или хеш декодированных данных и извлечение, которое записало
+	 * их в файл
+	 */
+	private static final class Key {
+
+		private final byte[] digest;
+
+		private final boolean decoded;
+
+		/**
+		 * Извлечение в файлы или null для данных в памяти. Сравнивается по ссылке.
+		 */
+		private final Object scope;
+
+		private final int hash;
+
+		private Key (byte[] digest, boolean decoded, Object scope) {
+			this.digest = digest;
+			this.decoded = decoded;
+			this.scope = scope;
+			this.hash = (Arrays.hashCode(digest) * 31 + (decoded ? 1 : 0)) * 31 + System.identityHashCode(scope);
+		}
+
+		@Override
+		public boolean equals (Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) o;
+			return decoded == key.decoded && Arrays.equals(digest, key.digest) && scope == key.scope;
+		}
+
+		@Override
+		public int hashCode () {
+			return hash;
+		}
+	}
+
+	/**
+	 * Запомненные данные. Описатель, которому они принадлежали, не удерживается: вместе с ним в памяти остались бы
+	 * весь документ и извлекатель.
+	 */
+	static final class Shared {
+
+		final byte[] data;
+
+		final Path path;
+
+		final long size;
+
+		private final WeakReference<XmlByteExtractor.Description> original;
+
+		/**
+		 * Под сколькими ключами запомнены данные, доступ только под блокировкой карты
+		 */
+		private int keys;
+
+		private Shared (XmlByteExtractor.Description description) {
+			this.data = description.getData();
+			this.path = description.getPath();
+			this.size = description.getSize();
+			this.original = new WeakReference<>(description);
+		}
+
+		/**
+		 * @return описатель, которому принадлежат данные, или null, если он уже удален сборщиком мусора
+		 */
+		XmlByteExtractor.Description getOriginal () {
+			return original.get();
+		}
+
+		private long getRetainedBytes () {
+			return data != null ? data.length : 0;
+		}
+	}
+}
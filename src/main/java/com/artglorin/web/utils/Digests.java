@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Вспомогательные методы для вычисления хешей
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+final class Digests {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private Digests () {
+	}
+
+	/**
+	 * @return новый экземпляр SHA-256
+	 */
+	static MessageDigest sha256 () {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256 обязан поддерживаться любой реализацией Java
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param value строка
+	 * @return SHA-256 от строки в кодировке UTF-8 в виде шестнадцатеричной строки
+	 */
+	static String sha256Hex (String value) {
+		return toHex(sha256().digest(value.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * @param bytes массив байт
+	 * @return шестнадцатеричное представление массива в нижнем регистре
+	 */
+	static String toHex (byte[] bytes) {
+		char[] result = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			result[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+			result[i * 2 + 1] = HEX[bytes[i] & 0xF];
+		}
+		return new String(result);
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+/**
+ * <p>Ограничения для загрузки удаленных источников данных по протоколам http и https.</p>
+ * <p>Позволяет задать таймауты соединения и чтения, а также максимальный размер одного источника и суммарный размер
+ * всех источников одного документа. Если сервер сообщает размер данных в заголовке Content-Length, превышение
+ * обнаруживается до чтения тела ответа.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ * @see XmlByteExtractor#setFetchPolicy(FetchPolicy)
+ */
+public class FetchPolicy {
+
+	/**
+	 * Таймаут установки соединения по умолчанию в миллисекундах
+	 */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+	/**
+	 * Таймаут чтения по умолчанию в миллисекундах
+	 */
+	public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+	private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+	private int readTimeout = DEFAULT_READ_TIMEOUT;
+
+	private long maxBytesPerAsset = Long.MAX_VALUE;
+
+	private long maxBytesPerDocument = Long.MAX_VALUE;
+
+	/**
+	 * @return таймаут установки соединения в миллисекундах, 0 - без ограничения
+	 */
+	public int getConnectTimeout () {
+		return connectTimeout;
+	}
+
+	/**
+	 * Устанавливает таймаут установки соединения
+	 *
+	 * @param connectTimeout таймаут в миллисекундах, 0 - без ограничения
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	public FetchPolicy setConnectTimeout (int connectTimeout) {
+		this.connectTimeout = connectTimeout > 0 ? connectTimeout : 0;
+		return this;
+	}
+
+	/**
+	 * @return таймаут чтения в миллисекундах, 0 - без ограничения
+	 */
+	public int getReadTimeout () {
+		return readTimeout;
+	}
+
+	/**
+	 * Устанавливает таймаут ожидания данных при чтении
+	 *
+	 * @param readTimeout таймаут в миллисекундах, 0 - без ограничения
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	public FetchPolicy setReadTimeout (int readTimeout) {
+		this.readTimeout = readTimeout > 0 ? readTimeout : 0;
+		return this;
+	}
+
+	/**
+	 * @return максимальный размер одного источника в байтах, по умолчанию без ограничения
+	 */
+	public long getMaxBytesPerAsset () {
+		return maxBytesPerAsset;
+	}
+
+	/**
+	 * Устанавливает максимальный размер одного источника
+	 *
+	 * @param maxBytesPerAsset размер в байтах, 0 и меньше - без ограничения
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	public FetchPolicy setMaxBytesPerAsset (long maxBytesPerAsset) {
+		this.maxBytesPerAsset = maxBytesPerAsset > 0 ? maxBytesPerAsset : Long.MAX_VALUE;
+		return this;
+	}
+
+	/**
+	 * @return максимальный суммарный размер удаленных источников одного документа в байтах
+	 */
+	public long getMaxBytesPerDocument () {
+		return maxBytesPerDocument;
+	}
+
+	/**
+	 * Устанавливает максимальный суммарный размер удаленных источников, загружаемых за одно извлечение
+	 *
+	 * @param maxBytesPerDocument размер в байтах, 0 и меньше - без ограничения
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	public FetchPolicy setMaxBytesPerDocument (long maxBytesPerDocument) {
+		this.maxBytesPerDocument = maxBytesPerDocument > 0 ? maxBytesPerDocument : Long.MAX_VALUE;
+		return this;
+	}
+}
@@ -0,0 +1,288 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * <p>Хранилище на диске. Данные хранятся по содержимому: имя файла данных - SHA-256 самих данных, поэтому одинаковые
+ * данные разных источников хранятся один раз. Описание записи с заголовками ответа и ссылкой на данные хранится в
+ * отдельном файле, имя которого строится из SHA-256 адреса источника.</p>
+ * <p>Файл данных записывается до описания и больше не изменяется, а описание заменяется атомарно, поэтому после сбоя
+ * описание никогда не ссылается на чужие данные. Данные, которые передаются файлом, копируются, а не читаются в
+ * память.</p>
+ * <p>Суммарный размер файлов данных ограничен, при превышении удаляются давно не использованные. Описания, данные
+ * которых удалены, удаляются при следующем обращении. Ошибки ввода-вывода не прерывают извлечение: запись просто
+ * считается отсутствующей.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public class FileMediaStore implements MediaStore {
+
+	/**
+	 * Максимальный суммарный размер данных по умолчанию, 1 ГБ
+	 */
+	public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+	/**
+	 * Имя файла данных
+	 */
+	private static final Pattern DIGEST = Pattern.compile("[0-9a-f]{64}");
+
+	private final Path directory;
+
+	private final Path dataDirectory;
+
+	private final long maxBytes;
+
+	/**
+	 * Размеры файлов данных в порядке использования, доступ только под блокировкой самой карты
+	 */
+	private final LinkedHashMap<String, Long> data = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long bytes;
+
+	/**
+	 * Хранилище размером до {@link #DEFAULT_MAX_BYTES}
+	 *
+	 * @param directory папка для хранения записей, будет создана при необходимости
+	 * @throws IOException если не удалось создать папку
+	 */
+	public FileMediaStore (Path directory) throws IOException {
+		this(directory, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * @param directory папка для хранения записей, будет создана при необходимости. Уже сохраненные в ней данные
+	 *                  учитываются в порядке времени изменения.
+	 * @param maxBytes  максимальный суммарный размер данных в байтах
+	 * @throws IOException если не удалось создать или прочитать папку
+	 */
+	public FileMediaStore (Path directory, long maxBytes) throws IOException {
+		if (directory == null) {
+			throw new IllegalArgumentException("Required argument directory is null");
+		}
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be positive");
+		}
+		this.directory = Files.createDirectories(directory);
+		this.dataDirectory = Files.createDirectories(directory.resolve("data"));
+		this.maxBytes = maxBytes;
+		List<Path> files = new ArrayList<>();
+		try (Stream<Path> list = Files.list(dataDirectory)) {
+			list.filter(file -> DIGEST.matcher(file.getFileName().toString()).matches()).forEach(files::add);
+		}
+		files.sort(Comparator.comparingLong(FileMediaStore::lastModified));
+		synchronized (data) {
+			for (Path file : files) {
+				data.put(file.getFileName().toString(), file.toFile().length());
+				bytes += file.toFile().length();
+			}
+			evict();
+		}
+	}
+
+	/**
+	 * @return суммарный размер файлов данных в байтах
+	 */
+	public long getBytes () {
+		synchronized (data) {
+			return bytes;
+		}
+	}
+
+	@Override
+	public MediaCache.Entry get (String url) {
+		Path meta = meta(url);
+		if (!Files.exists(meta)) {
+			return null;
+		}
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(meta)) {
+			properties.load(in);
+			String digest = properties.getProperty("digest", "");
+			if (!url.equals(properties.getProperty("url")) || !DIGEST.matcher(digest).matches()) {
+				return null;
+			}
+			byte[] bytes;
+			try {
+				bytes = Files.readAllBytes(dataDirectory.resolve(digest));
+			} catch (NoSuchFileException e) {
+				// Данные вытеснены
+				Files.deleteIfExists(meta);
+				return null;
+			}
+			if (bytes.length != Long.parseLong(properties.getProperty("size", "-1"))) {
+				return null;
+			}
+			synchronized (data) {
+				data.get(digest);
+			}
+			return new MediaCache.Entry(
+					properties.getProperty("contentType"),
+					bytes,
+					properties.getProperty("etag"),
+					properties.getProperty("lastModified"),
+					Long.parseLong(properties.getProperty("expires", "0")));
+		} catch (IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public void put (String url, MediaCache.Entry entry) {
+		try {
+			Path temp = Files.createTempFile(dataDirectory, "", ".tmp");
+			try {
+				Files.write(temp, entry.getData());
+				store(url, entry, temp, Digests.toHex(Digests.sha256().digest(entry.getData())));
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			// Запись не сохранилась, при следующем обращении источник будет загружен заново
+			remove(url);
+		}
+	}
+
+	/**
+	 * Копирует файл в хранилище, вычисляя хеш при копировании, не читая данные в память целиком
+	 */
+	@Override
+	public void put (String url, MediaCache.Entry entry, Path file) {
+		try {
+			Path temp = Files.createTempFile(dataDirectory, "", ".tmp");
+			try {
+				MessageDigest digest = Digests.sha256();
+				try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+					Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+				}
+				store(url, entry, temp, Digests.toHex(digest.digest()));
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			remove(url);
+		}
+	}
+
+	/**
+	 * Удаляет описание записи. Данные могут принадлежать и другим записям, поэтому удаляются только при вытеснении.
+	 */
+	@Override
+	public void remove (String url) {
+		try {
+			Files.deleteIfExists(meta(url));
+		} catch (IOException e) {
+			// Запись будет заменена при следующем сохранении
+		}
+	}
+
+	/**
+	 * Переносит записанные во временный файл данные на место по хешу и заменяет описание записи
+	 */
+	private void store (String url, MediaCache.Entry entry, Path temp, String digest) throws IOException {
+		long size = Files.size(temp);
+		if (size > maxBytes) {
+			// Такие данные вытеснят все остальные и сами не поместятся
+			remove(url);
+			return;
+		}
+		Path target = dataDirectory.resolve(digest);
+		synchronized (data) {
+			if (data.get(digest) == null) {
+				try {
+					Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+				} catch (FileAlreadyExistsException e) {
+					// Такие же данные уже сохранены другим экземпляром
+				}
+				data.put(digest, size);
+				bytes += size;
+			}
+		}
+		Properties properties = new Properties();
+		properties.setProperty("url", url);
+		properties.setProperty("contentType", entry.getContentType());
+		properties.setProperty("expires", Long.toString(entry.getExpires()));
+		properties.setProperty("digest", digest);
+		properties.setProperty("size", Long.toString(size));
+		if (entry.getETag() != null) {
+			properties.setProperty("etag", entry.getETag());
+		}
+		if (entry.getLastModified() != null) {
+			properties.setProperty("lastModified", entry.getLastModified());
+		}
+		Path meta = Files.createTempFile(directory, "", ".tmp");
+		try {
+			try (OutputStream out = Files.newOutputStream(meta)) {
+				properties.store(out, null);
+			}
+			Files.move(meta, meta(url), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(meta);
+		}
+		synchronized (data) {
+			// Только что сохраненные данные самые новые и вытесняются последними
+			evict();
+		}
+	}
+
+	/**
+	 * Удаляет давно не использованные данные, пока не будет соблюден предел. Вызывается под блокировкой data.
+	 */
+	private void evict () {
+		Iterator<Map.Entry<String, Long>> eldest = data.entrySet().iterator();
+		Map.Entry<String, Long> entry;
+		while (bytes > maxBytes && eldest.hasNext()) {
+			entry = eldest.next();
+			try {
+				Files.deleteIfExists(dataDirectory.resolve(entry.getKey()));
+			} catch (IOException e) {
+				// Файл занят, попробуем удалить при следующем вытеснении
+				continue;
+			}
+			bytes -= entry.getValue();
+			eldest.remove();
+		}
+	}
+
+	private Path meta (String url) {
+		return directory.resolve(Digests.sha256Hex(url) + ".meta");
+	}
+
+	private static long lastModified (Path file) {
+		return file.toFile().lastModified();
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import java.util.List;
+import java.util.PrimitiveIterator;
+
+/**
+ * <p>Нумерация страниц для количества элементов больше {@link Integer#MAX_VALUE}. Повторяет {@link Pagination}, но все
+ * номера страниц имеют тип long.</p>
+ * <p>Дополнительно содержит смещение и размер выборки для текущей страницы, чтобы слой доступа к данным не вычислял
+ * их сам.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ * @see LongPaginationBuilder
+ */
+public interface LongPagination {
+
+	/**
+	 * @return номер текущей страницы
+	 */
+	long getCurrentPage ();
+
+	/**
+	 * @return номер первой страницы в наборе
+	 */
+	long getFirstPageInSet ();
+
+	/**
+	 * @return номер последней страницы в наборе
+	 */
+	long getLastPageInSet ();
+
+	/**
+	 * @return неизменяемый список с номерами страниц в текущем наборе
+	 */
+	List<Long> getSetPages ();
+
+	/**
+	 * @return итератор по номерам страниц текущего набора без упаковки в {@link Long}
+	 */
+	PrimitiveIterator.OfLong getSetPagesIterator ();
+
+	/**
+	 * @return общее количество страниц, не меньше 1
+	 */
+	long getTotalPages ();
+
+	/**
+	 * @return общее количество элементов
+	 */
+	long getTotalItemsCount ();
+
+	/**
+	 * @return номер первого элемента текущей страницы, начиная с 0. Используется как OFFSET в запросе к данным
+	 */
+	long getOffset ();
+
+	/**
+	 * @return количество элементов на странице. Используется как LIMIT в запросе к данным
+	 */
+	int getLimit ();
+
+	/**
+	 * @return true если существует следующий набор страниц
+	 */
+	boolean isExistNextSet ();
+
+	/**
+	 * @return true если существует предыдущий набор страниц
+	 */
+	boolean isExistPreviousSet ();
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.RandomAccess;
+
+/**
+ * Реализация интерфейса {@link LongPagination}
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public class LongPaginationImpl implements LongPagination {
+
+	private final long totalItemsCount;
+
+	private final long totalPages;
+
+	private final long current;
+
+	private final long first;
+
+	private final long last;
+
+	private final int listSize;
+
+	private final boolean nextSet;
+
+	private final boolean previousSet;
+
+	/**
+	 * Конструктор устанавливающий все необходимые параметры
+	 *
+	 * @param totalItemsCount общее число существующих элементов
+	 * @param currentPage     номер текущей страницы
+	 * @param itemsListSize   количество отображаемых элементов на страницу
+	 * @param pagesInSet      количество страниц в наборе
+	 */
+	LongPaginationImpl (long totalItemsCount, long currentPage, int itemsListSize, int pagesInSet) {
+		this.totalItemsCount = totalItemsCount;
+		this.listSize = itemsListSize;
+		// Подсчитаем сколько всего будет страниц
+		long pages = totalItemsCount / itemsListSize + (totalItemsCount % itemsListSize > 0 ? 1 : 0);
+		this.totalPages = pages == 0 ? 1 : pages;
+		// Проверим и установим правильное значение текущей страницы
+		if (currentPage < 1) {
+			currentPage = 1;
+		} else if (currentPage > totalPages) {
+			currentPage = totalPages;
+		}
+		this.current = currentPage;
+		// Номер страницы перед набором кратен размеру набора
+		long beforeSet = (currentPage - 1) / pagesInSet * pagesInSet;
+		this.first = beforeSet + 1;
+		// Сравнение через разность, чтобы не переполнить long на последних наборах
+		this.last = pagesInSet < totalPages - beforeSet ? beforeSet + pagesInSet : totalPages;
+		this.previousSet = currentPage > pagesInSet;
+		this.nextSet = last < totalPages;
+	}
+
+	@Override
+	public long getCurrentPage () {
+		return current;
+	}
+
+	@Override
+	public long getFirstPageInSet () {
+		return first;
+	}
+
+	@Override
+	public long getLastPageInSet () {
+		return last;
+	}
+
+	/**
+	 * @return неизменяемое представление номеров страниц, которое вычисляет номера по индексу
+	 */
+	@Override
+	public List<Long> getSetPages () {
+		return new Range();
+	}
+
+	@Override
+	public PrimitiveIterator.OfLong getSetPagesIterator () {
+		return new PrimitiveIterator.OfLong() {
+
+			private long next = first;
+
+			/**
+			 * Отдельная метка нужна, потому что последний номер может быть равен {@link Long#MAX_VALUE}
+			 */
+			private boolean done;
+
+			@Override
+			public boolean hasNext () {
+				return !done;
+			}
+
+			@Override
+			public long nextLong () {
+				if (done) {
+					throw new NoSuchElementException();
+				}
+				done = next == last;
+				return next++;
+			}
+		};
+	}
+
+	@Override
+	public long getTotalPages () {
+		return totalPages;
+	}
+
+	@Override
+	public long getTotalItemsCount () {
+		return totalItemsCount;
+	}
+
+	/**
+	 * Не переполняется, так как текущая страница не больше последней и смещение меньше общего количества элементов
+	 */
+	@Override
+	public long getOffset () {
+		return (current - 1) * listSize;
+	}
+
+	@Override
+	public int getLimit () {
+		return listSize;
+	}
+
+	@Override
+	public boolean isExistNextSet () {
+		return nextSet;
+	}
+
+	@Override
+	public boolean isExistPreviousSet () {
+		return previousSet;
+	}
+
+	/**
+	 * Список номеров страниц текущего набора. Размер набора ограничен int, поэтому индексы не переполняются.
+	 */
+	private class Range extends AbstractList<Long> implements RandomAccess {
+
+		@Override
+		public Long get (int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			}
+			return first + index;
+		}
+
+		@Override
+		public int size () {
+			return (int) (last - first + 1);
+		}
+
+		@Override
+		public int indexOf (Object o) {
+			if (o instanceof Long) {
+				long page = (Long) o;
+				if (page >= first && page <= last) {
+					return (int) (page - first);
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public int lastIndexOf (Object o) {
+			return indexOf(o);
+		}
+
+		@Override
+		public boolean contains (Object o) {
+			return indexOf(o) >= 0;
+		}
+	}
+}
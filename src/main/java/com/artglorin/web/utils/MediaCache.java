@@ -0,0 +1,300 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import java.net.URLConnection;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Кеш данных, загруженных из удаленных источников {@link XmlByteExtractor}.</p>
+ * <p>Кеш соблюдает заголовки Cache-Control, Expires, ETag и Last-Modified: пока запись свежая, источник не
+ * загружается, а когда срок истек, отправляется условный запрос и при ответе 304 используются сохраненные данные.
+ * Ответы с Cache-Control: no-store не сохраняются.</p>
+ * <p>Один кеш можно использовать в нескольких извлекателях и потоках одновременно. Хранение записей выполняет
+ * {@link MediaStore}.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ * @see XmlByteExtractor#setMediaCache(MediaCache)
+ */
+public class MediaCache {
+
+	/**
+	 * Максимальный размер одной записи по умолчанию, 16 МБ
+	 */
+	public static final long DEFAULT_MAX_ENTRY_SIZE = 16L * 1024 * 1024;
+
+	private final MediaStore store;
+
+	private volatile long maxEntrySize = DEFAULT_MAX_ENTRY_SIZE;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder revalidations = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param store хранилище записей, не может быть null
+	 */
+	public MediaCache (MediaStore store) {
+		if (store == null) {
+			throw new IllegalArgumentException("Required argument store is null");
+		}
+		this.store = store;
+	}
+
+	/**
+	 * @return хранилище записей
+	 */
+	public MediaStore getStore () {
+		return store;
+	}
+
+	/**
+	 * @return максимальный размер данных одной записи в байтах
+	 */
+	public long getMaxEntrySize () {
+		return maxEntrySize;
+	}
+
+	/**
+	 * Устанавливает максимальный размер данных одной записи. Источники большего размера не сохраняются в кеше.
+	 *
+	 * @param maxEntrySize размер в байтах. По умолчанию {@link #DEFAULT_MAX_ENTRY_SIZE}.
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	public MediaCache setMaxEntrySize (long maxEntrySize) {
+		this.maxEntrySize = maxEntrySize > 0 ? maxEntrySize : 0;
+		return this;
+	}
+
+	/**
+	 * @return количество обращений, для которых данные были взяты из кеша без запроса к серверу
+	 */
+	public long getHits () {
+		return hits.sum();
+	}
+
+	/**
+	 * @return количество условных запросов, на которые сервер ответил, что данные не изменились
+	 */
+	public long getRevalidations () {
+		return revalidations.sum();
+	}
+
+	/**
+	 * @return количество обращений, для которых данные пришлось загрузить
+	 */
+	public long getMisses () {
+		return misses.sum();
+	}
+
+	/**
+	 * @return доля обращений, для которых данные не пришлось загружать, от 0 до 1
+	 */
+	public double getHitRate () {
+		long hits = getHits() + getRevalidations();
+		long total = hits + getMisses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	Entry get (String url) {
+		return store.get(url);
+	}
+
+	void recordHit () {
+		hits.increment();
+	}
+
+	void recordRevalidation () {
+		revalidations.increment();
+	}
+
+	void recordMiss () {
+		misses.increment();
+	}
+
+	/**
+	 * Сохраняет ответ сервера, если заголовки это разрешают
+	 */
+	void put (String url, URLConnection connection, byte[] data) {
+		Entry entry = data.length <= maxEntrySize ? Entry.of(connection, data, System.currentTimeMillis()) : null;
+		if (entry != null) {
+			store.put(url, entry);
+		} else {
+			store.remove(url);
+		}
+	}
+
+	/**
+	 * Сохраняет ответ сервера, записанный в файл, если заголовки разрешают сохранение и размер не превышает
+	 * {@link #getMaxEntrySize()}. Данные передаются хранилищу файлом, см. {@link MediaStore#put(String, Entry, Path)}.
+	 */
+	void put (String url, URLConnection connection, Path file, long size) {
+		Entry entry = size <= maxEntrySize ? Entry.of(connection, null, System.currentTimeMillis()) : null;
+		if (entry != null) {
+			store.put(url, entry, file);
+		} else {
+			store.remove(url);
+		}
+	}
+
+	/**
+	 * Обновляет срок жизни записи по заголовкам ответа 304
+	 */
+	Entry revalidate (String url, Entry entry, URLConnection connection) {
+		Entry updated = Entry.of(connection, entry.data, System.currentTimeMillis());
+		if (updated == null) {
+			store.remove(url);
+			return entry;
+		}
+		updated = new Entry(entry.contentType, entry.data,
+				updated.etag != null ? updated.etag : entry.etag,
+				updated.lastModified != null ? updated.lastModified : entry.lastModified,
+				updated.expires);
+		store.put(url, updated);
+		return updated;
+	}
+
+	/**
+	 * Запись кеша: данные и заголовки ответа, необходимые для проверки свежести
+	 */
+	public static final class Entry {
+
+		private final String contentType;
+
+		private final byte[] data;
+
+		private final String etag;
+
+		private final String lastModified;
+
+		private final long expires;
+
+		/**
+		 * @param contentType  значение заголовка Content-Type
+		 * @param data         данные
+		 * @param etag         значение заголовка ETag, может быть null
+		 * @param lastModified значение заголовка Last-Modified, может быть null
+		 * @param expires      время в миллисекундах, до которого запись свежая, 0 - запись нужно проверять всегда
+		 */
+		public Entry (String contentType, byte[] data, String etag, String lastModified, long expires) {
+			this.contentType = contentType;
+			this.data = data;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.expires = expires;
+		}
+
+		/**
+		 * Создает запись по заголовкам ответа
+		 *
+		 * @return запись или null, если ответ нельзя сохранять
+		 */
+		static Entry of (URLConnection connection, byte[] data, long now) {
+			String etag = connection.getHeaderField("ETag");
+			String lastModified = connection.getHeaderField("Last-Modified");
+			long expires = connection.getExpiration();
+			String cacheControl = connection.getHeaderField("Cache-Control");
+			if (cacheControl != null) {
+				boolean noCache = false;
+				for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+					directive = directive.trim();
+					if (directive.equals("no-store")) {
+						return null;
+					} else if (directive.equals("no-cache")) {
+						noCache = true;
+					} else if (directive.startsWith("max-age=")) {
+						try {
+							expires = now + Long.parseLong(directive.substring("max-age=".length()).replace("\"", "")) * 1000;
+						} catch (NumberFormatException e) {
+							noCache = true;
+						}
+					}
+				}
+				if (noCache) {
+					expires = 0;
+				}
+			}
+			if (expires <= now && etag == null && lastModified == null) {
+				// Проверить такую запись нечем, а свежей она не будет
+				return null;
+			}
+			return new Entry(connection.getContentType(), data, etag, lastModified, expires);
+		}
+
+		/**
+		 * @return такую же запись с указанными данными
+		 */
+		Entry withData (byte[] data) {
+			return new Entry(contentType, data, etag, lastModified, expires);
+		}
+
+		/**
+		 * @return значение заголовка Content-Type
+		 */
+		public String getContentType () {
+			return contentType;
+		}
+
+		/**
+		 * @return сохраненные данные. Массив нельзя изменять.
+		 */
+		public byte[] getData () {
+			return data;
+		}
+
+		/**
+		 * @return значение заголовка ETag или null
+		 */
+		public String getETag () {
+			return etag;
+		}
+
+		/**
+		 * @return значение заголовка Last-Modified или null
+		 */
+		public String getLastModified () {
+			return lastModified;
+		}
+
+		/**
+		 * @return время в миллисекундах, до которого запись свежая
+		 */
+		public long getExpires () {
+			return expires;
+		}
+
+		/**
+		 * @return размер данных в байтах
+		 */
+		public int getSize () {
+			return data.length;
+		}
+
+		/**
+		 * @param now текущее время в миллисекундах
+		 * @return true если данные можно использовать без запроса к серверу
+		 */
+		public boolean isFresh (long now) {
+			return expires > now;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * <p>Хранилище для {@link MediaCache}. Позволяет подключать разные уровни хранения загруженных данных.</p>
+ * <p>Реализации должны быть потокобезопасными, так как источники могут загружаться параллельно.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ * @see MemoryMediaStore
+ * @see FileMediaStore
+ */
+public interface MediaStore {
+
+	/**
+	 * @param url адрес источника
+	 * @return сохраненную запись или null, если записи нет
+	 */
+	MediaCache.Entry get (String url);
+
+	/**
+	 * Сохраняет запись, заменяя предыдущую
+	 *
+	 * @param url   адрес источника
+	 * @param entry запись для сохранения
+	 */
+	void put (String url, MediaCache.Entry entry);
+
+	/**
+	 * Сохраняет запись, данные которой записаны в файл. Файл принадлежит вызывающему и может измениться после вызова,
+	 * поэтому хранилище должно сохранить копию данных. Реализация по умолчанию читает файл в память и вызывает
+	 * {@link #put(String, MediaCache.Entry)}.
+	 *
+	 * @param url   адрес источника
+	 * @param entry запись без данных, {@link MediaCache.Entry#getData()} возвращает null
+	 * @param file  файл с данными
+	 */
+	default void put (String url, MediaCache.Entry entry, Path file) {
+		try {
+			put(url, entry.withData(Files.readAllBytes(file)));
+		} catch (IOException e) {
+			// Без записи в кеше источник просто будет загружен заново
+			remove(url);
+		}
+	}
+
+	/**
+	 * Удаляет запись, если она есть
+	 *
+	 * @param url адрес источника
+	 */
+	void remove (String url);
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Хранилище в памяти, которое вытесняет давно не использованные записи, когда суммарный размер данных превышает
+ * заданный предел.</p>
+ * <p>Может использоваться как первый уровень перед другим хранилищем, например {@link FileMediaStore}: записи
+ * сохраняются в оба уровня, а при промахе в памяти запись ищется во втором уровне и поднимается в память.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public class MemoryMediaStore implements MediaStore {
+
+	private final long maxBytes;
+
+	private final MediaStore nextLevel;
+
+	private final LinkedHashMap<String, MediaCache.Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long bytes;
+
+	/**
+	 * @param maxBytes максимальный суммарный размер данных в байтах
+	 */
+	public MemoryMediaStore (long maxBytes) {
+		this(maxBytes, null);
+	}
+
+	/**
+	 * @param maxBytes  максимальный суммарный размер данных в байтах
+	 * @param nextLevel хранилище второго уровня, может быть null
+	 */
+	public MemoryMediaStore (long maxBytes, MediaStore nextLevel) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be positive");
+		}
+		this.maxBytes = maxBytes;
+		this.nextLevel = nextLevel;
+	}
+
+	@Override
+	public MediaCache.Entry get (String url) {
+		MediaCache.Entry entry;
+		synchronized (entries) {
+			entry = entries.get(url);
+		}
+		if (entry == null && nextLevel != null) {
+			entry = nextLevel.get(url);
+			if (entry != null) {
+				putInMemory(url, entry);
+			}
+		}
+		return entry;
+	}
+
+	@Override
+	public void put (String url, MediaCache.Entry entry) {
+		putInMemory(url, entry);
+		if (nextLevel != null) {
+			nextLevel.put(url, entry);
+		}
+	}
+
+	/**
+	 * В память файл читается только если помещается в нее, второй уровень получает файл
+	 */
+	@Override
+	public void put (String url, MediaCache.Entry entry, Path file) {
+		try {
+			if (Files.size(file) <= maxBytes) {
+				putInMemory(url, entry.withData(Files.readAllBytes(file)));
+			} else {
+				removeFromMemory(url);
+			}
+		} catch (IOException e) {
+			removeFromMemory(url);
+		}
+		if (nextLevel != null) {
+			nextLevel.put(url, entry, file);
+		}
+	}
+
+	@Override
+	public void remove (String url) {
+		removeFromMemory(url);
+		if (nextLevel != null) {
+			nextLevel.remove(url);
+		}
+	}
+
+	/**
+	 * @return суммарный размер данных в памяти в байтах
+	 */
+	public long getBytes () {
+		synchronized (entries) {
+			return bytes;
+		}
+	}
+
+	/**
+	 * @return количество записей в памяти
+	 */
+	public int size () {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	private void removeFromMemory (String url) {
+		synchronized (entries) {
+			MediaCache.Entry removed = entries.remove(url);
+			if (removed != null) {
+				bytes -= removed.getSize();
+			}
+		}
+	}
+
+	private void putInMemory (String url, MediaCache.Entry entry) {
+		synchronized (entries) {
+			MediaCache.Entry previous = entries.remove(url);
+			if (previous != null) {
+				bytes -= previous.getSize();
+			}
+			if (entry.getSize() > maxBytes) {
+				// Такая запись вытеснит все остальные и сама не поместится
+				return;
+			}
+			entries.put(url, entry);
+			bytes += entry.getSize();
+			Iterator<Map.Entry<String, MediaCache.Entry>> eldest = entries.entrySet().iterator();
+			while (bytes > maxBytes) {
+				bytes -= eldest.next().getValue().getSize();
+				eldest.remove();
+			}
+		}
+	}
+}
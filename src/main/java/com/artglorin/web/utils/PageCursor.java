@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Позиция в упорядоченном списке для постраничного вывода по ключу (keyset pagination). Хранит направление перехода
+ * и значения ключей сортировки последнего увиденного элемента, по которым слой доступа к данным строит запрос вида
+ * "WHERE (date, id) &lt; (?, ?) ORDER BY date DESC, id DESC LIMIT ?". Стоимость такого запроса не растет с номером
+ * страницы, в отличие от OFFSET.</p>
+ * <p>Для передачи клиенту позиция кодируется в непрозрачную строку, безопасную для URL. Строка не подписана, поэтому
+ * ключи из нее нужно использовать только как параметры запроса.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ * @see CursorPagination
+ */
+public final class PageCursor {
+
+	/**
+	 * Направление перехода от элемента с ключами курсора
+	 */
+	public enum Direction {
+		/**
+		 * Элементы после ключей курсора, в прямом порядке сортировки
+		 */
+		NEXT,
+		/**
+		 * Элементы перед ключами курсора. Запрос выполняется в обратном порядке сортировки, а результат переворачивается
+		 */
+		PREVIOUS
+	}
+
+	/**
+	 * Версия формата закодированной строки
+	 */
+	private static final int VERSION = 1;
+
+	private final Direction direction;
+
+	private final List<String> keys;
+
+	/**
+	 * @param direction направление перехода
+	 * @param keys      значения ключей сортировки элемента, от которого выполняется переход
+	 */
+	public PageCursor (Direction direction, String... keys) {
+		if (direction == null) {
+			throw new IllegalArgumentException("Required argument direction is null");
+		}
+		if (keys == null || keys.length == 0) {
+			throw new IllegalArgumentException("Required argument keys is empty");
+		}
+		for (String key : keys) {
+			if (key == null) {
+				throw new IllegalArgumentException("Required argument keys contains null");
+			}
+		}
+		this.direction = direction;
+		this.keys = Collections.unmodifiableList(Arrays.asList(keys.clone()));
+	}
+
+	/**
+	 * @return направление перехода
+	 */
+	public Direction getDirection () {
+		return direction;
+	}
+
+	/**
+	 * @return неизменяемый список значений ключей сортировки в порядке сортировки
+	 */
+	public List<String> getKeys () {
+		return keys;
+	}
+
+	/**
+	 * @return непрозрачную строку для передачи клиенту, содержит только символы base64url
+	 */
+	public String encode () {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(VERSION);
+			out.writeByte(direction.ordinal());
+			out.writeShort(keys.size());
+			for (String key : keys) {
+				out.writeUTF(key);
+			}
+		} catch (IOException e) {
+			// Слишком длинный ключ, запись в память другой ошибки не дает
+			throw new IllegalArgumentException("Cannot encode cursor: " + e.getMessage());
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+	}
+
+	/**
+	 * Восстанавливает позицию из строки, полученной от {@link #encode()}
+	 *
+	 * @param cursor закодированная строка
+	 * @return позицию в списке
+	 * @throws IllegalArgumentException если строка не является закодированной позицией
+	 */
+	public static PageCursor decode (String cursor) {
+		if (cursor == null) {
+			throw new IllegalArgumentException("Required argument cursor is null");
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+			int version = in.readUnsignedByte();
+			int direction = in.readUnsignedByte();
+			if (version != VERSION || direction >= Direction.values().length) {
+				throw new IllegalArgumentException("Invalid cursor: " + cursor);
+			}
+			String[] keys = new String[in.readUnsignedShort()];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = in.readUTF();
+			}
+			if (in.read() != -1) {
+				throw new IllegalArgumentException("Invalid cursor: " + cursor);
+			}
+			return new PageCursor(Direction.values()[direction], keys);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor);
+		}
+	}
+
+	@Override
+	public boolean equals (Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof PageCursor)) {
+			return false;
+		}
+		PageCursor that = (PageCursor) o;
+		return direction == that.direction && keys.equals(that.keys);
+	}
+
+	@Override
+	public int hashCode () {
+		return 31 * direction.hashCode() + keys.hashCode();
+	}
+
+	@Override
+	public String toString () {
+		return direction + " " + keys;
+	}
+}
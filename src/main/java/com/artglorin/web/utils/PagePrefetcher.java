@@ -0,0 +1,339 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Заранее загружает страницы, которые пользователь скорее всего откроет следующими: соседние с текущей страницей
+ * по данным {@link Pagination}. Загрузка выполняется в указанном исполнителе, результаты хранятся в ограниченном
+ * кеше, самые давно использованные страницы вытесняются.</p>
+ * <p>Когда пользователь уходит на другую страницу, незавершенные загрузки страниц, которые больше не являются
+ * соседними, отменяются. Уже загруженные страницы остаются в кеше, чтобы возврат назад не требовал загрузки.</p>
+ * <p>Экземпляр относится к одному списку, например к результату одного запроса пользователя, и может храниться в его
+ * сессии. Все методы можно вызывать из нескольких потоков.</p>
+ * <pre>
+ * List&lt;Item&gt; items = prefetcher.getPage(pagination.getCurrentPage());
+ * prefetcher.prefetch(pagination);
+ * </pre>
+ *
+ * @param <T> тип содержимого страницы
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public class PagePrefetcher<T> {
+
+	private final PageLoader<T> loader;
+
+	private final Executor executor;
+
+	private final Map<Integer, FutureTask<T>> pages;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder reused = new LongAdder();
+
+	private final LongAdder prefetched = new LongAdder();
+
+	private final LongAdder cancelled = new LongAdder();
+
+	private volatile int distance = 1;
+
+	/**
+	 * @param loader     загрузчик страниц, не может быть null
+	 * @param executor   исполнитель, в котором выполняются заблаговременные загрузки, не может быть null
+	 * @param maxEntries максимальное количество страниц в кеше, включая загружаемые
+	 */
+	public PagePrefetcher (PageLoader<T> loader, Executor executor, final int maxEntries) {
+		if (loader == null) {
+			throw new IllegalArgumentException("Required argument loader is null");
+		}
+		if (executor == null) {
+			throw new IllegalArgumentException("Required argument executor is null");
+		}
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("Max entries must be positive: " + maxEntries);
+		}
+		this.loader = loader;
+		this.executor = executor;
+		pages = new LinkedHashMap<Integer, FutureTask<T>>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry (Map.Entry<Integer, FutureTask<T>> eldest) {
+				if (size() > maxEntries) {
+					cancel(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Указывает, сколько страниц до и после текущей нужно загружать заранее. По умолчанию 1.
+	 *
+	 * @param distance количество страниц с каждой стороны от текущей, 0 - заблаговременная загрузка отключена
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	public PagePrefetcher<T> setDistance (int distance) {
+		this.distance = distance > 0 ? distance : 0;
+		return this;
+	}
+
+	/**
+	 * @return количество страниц до и после текущей, которые загружаются заранее
+	 */
+	public int getDistance () {
+		return distance;
+	}
+
+	/**
+	 * <p>Запускает загрузку страниц, соседних с текущей, которых еще нет в кеше. Страница после текущей загружается
+	 * только если она существует: при неточном общем количестве элементов это определяется по
+	 * {@link Pagination#isExistNextSet()}.</p>
+	 * <p>Незавершенные загрузки страниц, которые больше не являются соседними, отменяются.</p>
+	 *
+	 * @param pagination нумерация страниц, которую видит пользователь
+	 */
+	public void prefetch (Pagination pagination) {
+		if (pagination == null) {
+			throw new IllegalArgumentException("Required argument pagination is null");
+		}
+		int current = pagination.getCurrentPage();
+		long from = Math.max(1L, (long) current - distance);
+		// Номера страниц не выходят за пределы int, даже если следующие страницы могут существовать
+		long to = Math.min(Math.min((long) current + distance, lastPage(pagination)), Integer.MAX_VALUE);
+		FutureTask<T> task;
+		synchronized (pages) {
+			Iterator<Map.Entry<Integer, FutureTask<T>>> iterator = pages.entrySet().iterator();
+			Map.Entry<Integer, FutureTask<T>> entry;
+			while (iterator.hasNext()) {
+				entry = iterator.next();
+				if (!entry.getValue().isDone() && (entry.getKey() < from || entry.getKey() > to)) {
+					cancel(entry.getValue());
+					iterator.remove();
+				}
+			}
+			for (long page = from; page <= to; page++) {
+				if (page == current || pages.containsKey((int) page)) {
+					continue;
+				}
+				task = newTask((int) page);
+				pages.put((int) page, task);
+				try {
+					executor.execute(task);
+					prefetched.increment();
+				} catch (RejectedExecutionException e) {
+					// Исполнитель перегружен или остановлен, страница будет загружена по запросу
+					pages.remove((int) page);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Возвращает содержимое страницы. Если страница уже загружена или загружается заранее, используется этот результат,
+	 * иначе страница загружается в текущем потоке. Заблаговременная загрузка, которую исполнитель еще не начал,
+	 * выполняется в текущем потоке, а не ожидает своей очереди.
+	 *
+	 * @param page номер страницы
+	 * @return содержимое страницы
+	 * @throws Exception исключение загрузчика
+	 */
+	public T getPage (int page) throws Exception {
+		FutureTask<T> task;
+		synchronized (pages) {
+			task = pages.get(page);
+		}
+		if (task instanceof Prefetch) {
+			boolean inline = ((Prefetch<T>) task).runInline();
+			try {
+				T result = task.get();
+				if (inline) {
+					misses.increment();
+				} else {
+					hits.increment();
+				}
+				// Следующие обращения к странице уже не относятся к заблаговременной загрузке
+				synchronized (pages) {
+					pages.replace(page, task, completed(result));
+				}
+				return result;
+			} catch (CancellationException | ExecutionException e) {
+				synchronized (pages) {
+					pages.remove(page, task);
+				}
+				if (inline && e instanceof ExecutionException) {
+					// Это и была загрузка по запросу, повторять ее не нужно
+					misses.increment();
+					throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				}
+				// Заблаговременная загрузка не удалась, ошибку нужно получить от загрузки по запросу
+			}
+		} else if (task != null) {
+			reused.increment();
+			return task.get();
+		}
+		misses.increment();
+		T result = loader.load(page);
+		synchronized (pages) {
+			pages.put(page, completed(result));
+		}
+		return result;
+	}
+
+	/**
+	 * Отменяет все незавершенные загрузки и очищает кеш
+	 */
+	public void clear () {
+		synchronized (pages) {
+			for (FutureTask<T> task : pages.values()) {
+				cancel(task);
+			}
+			pages.clear();
+		}
+	}
+
+	/**
+	 * @return количество обращений к {@link #getPage(int)}, для которых страница была загружена заранее
+	 */
+	public long getHits () {
+		return hits.sum();
+	}
+
+	/**
+	 * @return количество обращений к {@link #getPage(int)}, для которых страницу пришлось загрузить по запросу
+	 */
+	public long getMisses () {
+		return misses.sum();
+	}
+
+	/**
+	 * @return количество обращений к {@link #getPage(int)}, для которых страница уже была загружена по одному из
+	 * предыдущих обращений
+	 */
+	public long getReused () {
+		return reused.sum();
+	}
+
+	/**
+	 * @return доля обращений, для которых страница была загружена заранее, от всех обращений, от 0 до 1
+	 */
+	public double getHitRate () {
+		long hits = getHits();
+		long total = hits + getMisses() + getReused();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * @return количество запущенных заблаговременных загрузок
+	 */
+	public long getPrefetched () {
+		return prefetched.sum();
+	}
+
+	/**
+	 * @return количество заблаговременных загрузок, отмененных до завершения
+	 */
+	public long getCancelled () {
+		return cancelled.sum();
+	}
+
+	/**
+	 * @return номер последней страницы, которая может существовать
+	 */
+	private static long lastPage (Pagination pagination) {
+		if (pagination.isTotalItemsCountExact()) {
+			return pagination.getTotalPages();
+		}
+		return pagination.isExistNextSet() ? Long.MAX_VALUE : pagination.getLastPageInSet();
+	}
+
+	private FutureTask<T> newTask (int page) {
+		return new Prefetch<>(() -> loader.load(page));
+	}
+
+	private static <T> FutureTask<T> completed (T result) {
+		FutureTask<T> task = new FutureTask<>(() -> result);
+		task.run();
+		return task;
+	}
+
+	private void cancel (FutureTask<T> task) {
+		if (task.cancel(true)) {
+			cancelled.increment();
+		}
+	}
+
+	/**
+	 * Заблаговременная загрузка. Выполняется один раз: либо исполнителем, либо потоком, которому страница понадобилась
+	 * раньше, чем исполнитель до нее дошел.
+	 */
+	private static final class Prefetch<T> extends FutureTask<T> {
+
+		private final AtomicBoolean started = new AtomicBoolean();
+
+		private Prefetch (Callable<T> callable) {
+			super(callable);
+		}
+
+		@Override
+		public void run () {
+			if (started.compareAndSet(false, true)) {
+				super.run();
+			}
+		}
+
+		/**
+		 * @return true если загрузка выполнена в текущем потоке, false если ее уже начал исполнитель
+		 */
+		private boolean runInline () {
+			if (started.compareAndSet(false, true)) {
+				super.run();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Загрузчик содержимого страницы, например запрос к базе данных
+	 *
+	 * @param <T> тип содержимого страницы
+	 */
+	public interface PageLoader<T> {
+
+		/**
+		 * @param page номер страницы, начиная с 1
+		 * @return содержимое страницы
+		 * @throws Exception если страницу не удалось загрузить
+		 */
+		T load (int page) throws Exception;
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import java.util.AbstractList;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.RandomAccess;
+
+/**
+ * Неизменяемый список номеров страниц от первой до последней включительно. Номера не хранятся, а вычисляются по
+ * индексу, поэтому список любого размера занимает в памяти только две границы.
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+final class PageRange extends AbstractList<Integer> implements RandomAccess {
+
+	private final int first;
+
+	private final int last;
+
+	/**
+	 * @param first номер первой страницы
+	 * @param last  номер последней страницы, не меньше первой
+	 */
+	PageRange (int first, int last) {
+		this.first = first;
+		this.last = last;
+	}
+
+	@Override
+	public Integer get (int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		return first + index;
+	}
+
+	@Override
+	public int size () {
+		return last - first + 1;
+	}
+
+	@Override
+	public boolean contains (Object o) {
+		return indexOf(o) >= 0;
+	}
+
+	@Override
+	public int indexOf (Object o) {
+		if (o instanceof Integer) {
+			int page = (Integer) o;
+			if (page >= first && page <= last) {
+				return page - first;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int lastIndexOf (Object o) {
+		return indexOf(o);
+	}
+
+	/**
+	 * @return итератор, который отдает номера страниц без упаковки через {@link PrimitiveIterator.OfInt#nextInt()}
+	 */
+	@Override
+	public PrimitiveIterator.OfInt iterator () {
+		return new PrimitiveIterator.OfInt() {
+
+			/**
+			 * Следующий номер. Хранится в long, чтобы не переполниться после {@link Integer#MAX_VALUE}
+			 */
+			private long next = first;
+
+			@Override
+			public boolean hasNext () {
+				return next <= last;
+			}
+
+			@Override
+			public int nextInt () {
+				if (next > last) {
+					throw new NoSuchElementException();
+				}
+				return (int) next++;
+			}
+		};
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+/**
+ * <p>Способ выбора номеров страниц, которые показываются в наборе вокруг текущей страницы. Границы набора должны
+ * вычисляться за постоянное время.</p>
+ * <p>Стратегия влияет на то, как часто меняется набор при переходе на соседнюю страницу, а значит и на то, насколько
+ * часто можно повторно использовать уже отрисованный фрагмент нумерации.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ * @see PaginationBuilder#setPageWindowStrategy(PageWindowStrategy)
+ */
+public interface PageWindowStrategy {
+
+	/**
+	 * Фиксированные наборы 1-10, 11-20, ... Набор меняется только при переходе через его границу, поэтому
+	 * фрагмент нумерации одинаков для всех страниц набора, кроме отметки текущей страницы.
+	 */
+	PageWindowStrategy BLOCKS = new PageWindowStrategy() {
+
+		@Override
+		public int getFirstPageInSet (int currentPage, int totalPages, int pagesInSet) {
+			return (currentPage - 1) / pagesInSet * pagesInSet + 1;
+		}
+
+		@Override
+		public int getLastPageInSet (int firstPage, int totalPages, int pagesInSet) {
+			// Сравнение через разность, чтобы не переполнить int на последних наборах
+			return pagesInSet <= totalPages - firstPage ? firstPage + pagesInSet - 1 : totalPages;
+		}
+	};
+
+	/**
+	 * Скользящее окно, в середине которого находится текущая страница. У краев окно прижимается к первой или
+	 * последней странице и всегда содержит pagesInSet страниц, если столько существует.
+	 */
+	PageWindowStrategy CENTERED = new PageWindowStrategy() {
+
+		@Override
+		public int getFirstPageInSet (int currentPage, int totalPages, int pagesInSet) {
+			if (totalPages <= pagesInSet) {
+				return 1;
+			}
+			int first = currentPage - (pagesInSet - 1) / 2;
+			return Math.max(1, Math.min(first, totalPages - pagesInSet + 1));
+		}
+
+		@Override
+		public int getLastPageInSet (int firstPage, int totalPages, int pagesInSet) {
+			return BLOCKS.getLastPageInSet(firstPage, totalPages, pagesInSet);
+		}
+	};
+
+	/**
+	 * <p>Скользящее окно для вида "1 ... 7 8 [9] 10 11 ... 50". Окно занимает pagesInSet - 2 места, а первая и
+	 * последняя страницы показываются отдельно ({@link Pagination#isShowFirstPage()} и
+	 * {@link Pagination#isShowLastPage()}), поэтому в набор они не входят. У краев окно присоединяет первую или
+	 * последнюю страницу и занимает pagesInSet - 1 место: "1 [2] 3 4 5 6 ... 50". Если всех страниц не больше
+	 * pagesInSet, набор содержит все страницы. Набор никогда не длиннее pagesInSet: при pagesInSet равном 1 присоединять
+	 * крайнюю страницу некуда, и набор состоит только из текущей страницы.</p>
+	 * <p>Текущая страница всегда входит в набор. Многоточие нужно, если между отдельно показанной страницей и набором
+	 * есть пропущенные страницы.</p>
+	 */
+	PageWindowStrategy EDGES = new PageWindowStrategy() {
+
+		@Override
+		public int getFirstPageInSet (int currentPage, int totalPages, int pagesInSet) {
+			if (totalPages <= pagesInSet) {
+				return 1;
+			}
+			if (pagesInSet == 1) {
+				return currentPage;
+			}
+			int window = Math.max(pagesInSet - 2, 1);
+			int first = currentPage - (window - 1) / 2;
+			if (first <= 2) {
+				// Окно дошло до первой страницы и включает ее
+				return 1;
+			}
+			// Сравнение через разность, чтобы не переполнить int на последних страницах
+			if (window - 1 >= totalPages - 1 - first) {
+				// Окно дошло до последней страницы и включает ее
+				return totalPages - window;
+			}
+			return first;
+		}
+
+		@Override
+		public int getLastPageInSet (int firstPage, int totalPages, int pagesInSet) {
+			if (totalPages <= pagesInSet) {
+				return totalPages;
+			}
+			if (pagesInSet == 1) {
+				return firstPage;
+			}
+			int window = Math.max(pagesInSet - 2, 1);
+			if (firstPage == 1) {
+				return window + 1;
+			}
+			return window - 1 >= totalPages - 1 - firstPage ? totalPages : firstPage + window - 1;
+		}
+
+		@Override
+		public boolean isShowingEdgePages () {
+			return true;
+		}
+	};
+
+	/**
+	 * @param currentPage номер текущей страницы, от 1 до totalPages
+	 * @param totalPages  общее количество страниц, не меньше 1
+	 * @param pagesInSet  количество страниц в наборе, не меньше 1
+	 * @return номер первой страницы в наборе
+	 */
+	int getFirstPageInSet (int currentPage, int totalPages, int pagesInSet);
+
+	/**
+	 * @param firstPage  номер первой страницы в наборе, полученный от {@link #getFirstPageInSet(int, int, int)}
+	 * @param totalPages общее количество страниц, не меньше 1
+	 * @param pagesInSet количество страниц в наборе, не меньше 1
+	 * @return номер последней страницы в наборе, не больше totalPages
+	 */
+	int getLastPageInSet (int firstPage, int totalPages, int pagesInSet);
+
+	/**
+	 * @return true если первая и последняя страницы показываются отдельно от набора, если не входят в него
+	 * @see Pagination#isShowFirstPage()
+	 * @see Pagination#isShowLastPage()
+	 */
+	default boolean isShowingEdgePages () {
+		return false;
+	}
+}
@@ -16,9 +16,15 @@
 package com.artglorin.web.utils;
 
 import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
 
 /**
- * Интерфейс для работы с нумерацией на веб страницах.
+ * <p>Интерфейс для работы с нумерацией на веб страницах.</p>
+ * <p>Текущая страница всегда входит в набор: getFirstPageInSet() &lt;= getCurrentPage() &lt;= getLastPageInSet().
+ * {@link #isExistPreviousSet()} и {@link #isExistNextSet()} означают, что до или после набора есть страницы.
+ * Первая и последняя страницы, которые показываются отдельно от набора (например, при
+ * {@link PageWindowStrategy#EDGES}), доступны через {@link #isShowFirstPage()} и {@link #isShowLastPage()}.</p>
  *
  * @author Verminsky V.V. e-mail: develop@artglorin.com
  * @version 0.0.1
@@ -46,6 +52,34 @@ public interface Pagination {
 	 */
 	List<Integer> getSetPages ();
 
+	/**
+	 * @return количество страниц в текущем наборе
+	 */
+	default int getPagesCountInSet () {
+		return getLastPageInSet() - getFirstPageInSet() + 1;
+	}
+
+	/**
+	 * Номера страниц текущего набора без упаковки в {@link Integer}
+	 *
+	 * @return итератор по номерам страниц от первой до последней в наборе
+	 */
+	default PrimitiveIterator.OfInt getSetPagesIterator () {
+		return new PageRange(getFirstPageInSet(), getLastPageInSet()).iterator();
+	}
+
+	/**
+	 * Выполняет действие для каждого номера страницы текущего набора без упаковки в {@link Integer}
+	 *
+	 * @param action действие, которое получает номер страницы
+	 */
+	default void forEachSetPage (IntConsumer action) {
+		int last = getLastPageInSet();
+		for (long page = getFirstPageInSet(); page <= last; page++) {
+			action.accept((int) page);
+		}
+	}
+
 	/**
 	 * @return true если существует следующий набор страниц
 	 */
@@ -55,4 +89,40 @@ public interface Pagination {
 	 * @return true если существует предыдущий набор страниц
 	 */
 	boolean isExistPreviousSet ();
+
+	/**
+	 * @return true если первую страницу нужно показать отдельно перед набором. Она не входит в набор, а многоточие
+	 * между ними нужно, если {@link #getFirstPageInSet()} больше 2
+	 */
+	default boolean isShowFirstPage () {
+		return false;
+	}
+
+	/**
+	 * @return true если последнюю страницу ({@link #getTotalPages()}) нужно показать отдельно после набора. Она не
+	 * входит в набор, а многоточие между ними нужно, если {@link #getLastPageInSet()} меньше getTotalPages() - 1
+	 */
+	default boolean isShowLastPage () {
+		return false;
+	}
+
+	/**
+	 * Реализация по умолчанию знает только текущий набор и возвращает номер его последней страницы, а если есть
+	 * следующий набор, то на одну больше. {@link PaginationImpl} возвращает точное значение.
+	 *
+	 * @return общее количество страниц, или оценку снизу, если {@link #isTotalItemsCountExact()} возвращает false
+	 */
+	default int getTotalPages () {
+		return isExistNextSet() ? getLastPageInSet() + 1 : getLastPageInSet();
+	}
+
+	/**
+	 * Если общее количество элементов известно только как оценка снизу, последняя страница набора может оказаться не
+	 * последней страницей вообще. В этом случае {@link #isExistNextSet()} возвращает true для полного набора.
+	 *
+	 * @return true если набор построен по точному общему количеству элементов
+	 */
+	default boolean isTotalItemsCountExact () {
+		return true;
+	}
 }
@@ -15,6 +15,9 @@
  */
 package com.artglorin.web.utils;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
 /**
  * Интерфейс для удобной настройки и создания реализации интерфейса {@link Pagination}
  *
@@ -59,6 +62,11 @@ public interface PaginationBuilder {
 	 */
 	PaginationBuilder setItemsListSize (int listSize);
 
+	/**
+	 * @return количество отображаемых элементов на каждой странице
+	 */
+	int getItemsListSize ();
+
 	/**
 	 * Устанавливает количество страниц в наборе
 	 *
@@ -74,8 +82,67 @@ public interface PaginationBuilder {
 	 * @return ссылку на себя для удобной настройки по цепочке
 	 */
 	PaginationBuilder setTotalItemsCount (int totalItemsCount);
-}
 
+	/**
+	 * <p>Устанавливает общее количество элементов, которое вычисляется асинхронно, например отдельным запросом
+	 * COUNT(*). Если к вызову {@link #build()} значение уже готово, оно используется как точное. Иначе набор
+	 * строится по оценке снизу из {@link #setTotalItemsCountAtLeast(int)} и {@link #setFetchedItemsCount(int)},
+	 * а {@link Pagination#isTotalItemsCountExact()} возвращает false.</p>
+	 *
+	 * @param totalItemsCount будущее общее количество элементов
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	PaginationBuilder setTotalItemsCount (CompletableFuture<Integer> totalItemsCount);
 
+	/**
+	 * <p>Устанавливает общее количество элементов, которое вычисляется только при необходимости, например запросом
+	 * COUNT(*). Если {@link #setFetchedItemsCount(int)} показал, что текущая страница последняя, количество известно
+	 * без подсчета и поставщик не вызывается. Иначе он вызывается в {@link #build()} один раз, а результат
+	 * запоминается для следующих вызовов {@link #build()}.</p>
+	 *
+	 * @param totalItemsCount поставщик общего количества элементов, не возвращающий null
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	PaginationBuilder setTotalItemsCount (Supplier<Integer> totalItemsCount);
 
+	/**
+	 * Устанавливает оценку снизу общего количества элементов: элементов не меньше указанного количества, но может
+	 * быть больше
+	 *
+	 * @param totalItemsCount оценка снизу общего количества элементов
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	PaginationBuilder setTotalItemsCountAtLeast (int totalItemsCount);
+
+	/**
+	 * <p>Устанавливает количество элементов, выбранных для текущей страницы запросом с размером выборки на один
+	 * больше размера страницы. Если выбрано не больше размера страницы, значит текущая страница последняя и общее
+	 * количество элементов становится точным без подсчета. Иначе оценка снизу увеличивается до последнего выбранного
+	 * элемента.</p>
+	 * <p>Используется, только если точное количество не установлено через {@link #setTotalItemsCount(int)}, и
+	 * действует на один вызов {@link #build()}.</p>
+	 *
+	 * @param fetchedItemsCount количество выбранных элементов
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	PaginationBuilder setFetchedItemsCount (int fetchedItemsCount);
 
+	/**
+	 * Устанавливает способ выбора страниц в наборе. По умолчанию используется {@link PageWindowStrategy#BLOCKS}
+	 *
+	 * @param strategy способ выбора страниц в наборе
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	PaginationBuilder setPageWindowStrategy (PageWindowStrategy strategy);
+
+	/**
+	 * Создает построитель нумерации по ключу вместо номеров страниц. Количество элементов на странице переносится из
+	 * текущих настроек.
+	 *
+	 * @return новый построитель {@link CursorPagination}
+	 * @see CursorPaginationBuilder
+	 */
+	default CursorPaginationBuilder cursorBased () {
+		return CursorPaginationBuilderImpl.getInstance().setItemsListSize(getItemsListSize());
+	}
+}
@@ -15,6 +15,9 @@
  */
 package com.artglorin.web.utils;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
 /**
  * Реализация интерфейса {@link PaginationBuilder}
  *
@@ -33,6 +36,28 @@ public class PaginationBuilderImpl implements PaginationBuilder {
 
 	private int currentPage;
 
+	private PageWindowStrategy strategy = PageWindowStrategy.BLOCKS;
+
+	/**
+	 * Асинхронно вычисляемое общее количество элементов, null если не используется
+	 */
+	private CompletableFuture<Integer> itemsCountFuture;
+
+	/**
+	 * Поставщик общего количества элементов, еще не вызванный, null если не используется
+	 */
+	private Supplier<Integer> itemsCountSupplier;
+
+	/**
+	 * Метка того, что itemsCount является оценкой снизу
+	 */
+	private boolean atLeast;
+
+	/**
+	 * Количество выбранных для текущей страницы элементов, -1 если не установлено
+	 */
+	private int fetchedCount = -1;
+
 	private PaginationBuilderImpl () {
 	}
 
@@ -55,9 +80,59 @@ public class PaginationBuilderImpl implements PaginationBuilder {
 		return this;
 	}
 
+	@Override
+	public int getItemsListSize () {
+		return listSize;
+	}
+
 	@Override
 	public PaginationBuilder setTotalItemsCount (int totalItemsCount) {
 		this.itemsCount = totalItemsCount >= 0 ? totalItemsCount : 0;
+		this.itemsCountFuture = null;
+		this.itemsCountSupplier = null;
+		this.atLeast = false;
+		return this;
+	}
+
+	@Override
+	public PaginationBuilder setPageWindowStrategy (PageWindowStrategy strategy) {
+		if (strategy == null) {
+			throw new IllegalArgumentException("Required argument strategy is null");
+		}
+		this.strategy = strategy;
+		return this;
+	}
+
+	@Override
+	public PaginationBuilder setTotalItemsCount (CompletableFuture<Integer> totalItemsCount) {
+		if (totalItemsCount == null) {
+			throw new IllegalArgumentException("Required argument totalItemsCount is null");
+		}
+		this.itemsCountFuture = totalItemsCount;
+		this.itemsCountSupplier = null;
+		return this;
+	}
+
+	@Override
+	public PaginationBuilder setTotalItemsCount (Supplier<Integer> totalItemsCount) {
+		if (totalItemsCount == null) {
+			throw new IllegalArgumentException("Required argument totalItemsCount is null");
+		}
+		this.itemsCountSupplier = totalItemsCount;
+		this.itemsCountFuture = null;
+		return this;
+	}
+
+	@Override
+	public PaginationBuilder setTotalItemsCountAtLeast (int totalItemsCount) {
+		this.itemsCount = totalItemsCount >= 0 ? totalItemsCount : 0;
+		this.atLeast = true;
+		return this;
+	}
+
+	@Override
+	public PaginationBuilder setFetchedItemsCount (int fetchedItemsCount) {
+		this.fetchedCount = fetchedItemsCount >= 0 ? fetchedItemsCount : 0;
 		return this;
 	}
 
@@ -69,7 +144,39 @@ public class PaginationBuilderImpl implements PaginationBuilder {
 
 	@Override
 	public Pagination build () {
-		return new PaginationImpl(itemsCount, currentPage, listSize, pagesCount);
+		int fetched = fetchedCount;
+		fetchedCount = -1;
+		if (itemsCountFuture != null && itemsCountFuture.isDone() && !itemsCountFuture.isCompletedExceptionally()) {
+			Integer total = itemsCountFuture.getNow(null);
+			if (total != null) {
+				return new PaginationImpl(Math.max(total, 0), currentPage, listSize, pagesCount, true, strategy);
+			}
+		}
+		boolean lastFetched = fetched == 0 && currentPage <= 1 || fetched > 0 && fetched <= listSize;
+		if (itemsCountSupplier != null && !lastFetched) {
+			Integer total = itemsCountSupplier.get();
+			if (total == null) {
+				throw new IllegalStateException("Total items count supplier returned null");
+			}
+			setTotalItemsCount(total);
+		}
+		if (itemsCountFuture == null && itemsCountSupplier == null && !atLeast) {
+			return new PaginationImpl(itemsCount, currentPage, listSize, pagesCount, true, strategy);
+		}
+		int total = atLeast ? itemsCount : 0;
+		if (fetched == 0 && currentPage <= 1) {
+			return new PaginationImpl(0, currentPage, listSize, pagesCount, true, strategy);
+		}
+		// Пустая выборка на дальней странице ничего не говорит о том, сколько элементов перед ней
+		if (fetched > 0) {
+			// Сколько элементов точно существует до последнего выбранного включительно
+			long seen = (long) (Math.max(currentPage, 1) - 1) * listSize + fetched;
+			if (fetched <= listSize) {
+				return new PaginationImpl((int) Math.min(seen, Integer.MAX_VALUE), currentPage, listSize, pagesCount, true, strategy);
+			}
+			total = (int) Math.min(Math.max(total, seen), Integer.MAX_VALUE);
+		}
+		return new PaginationImpl(total, currentPage, listSize, pagesCount, false, strategy);
 	}
 
 }
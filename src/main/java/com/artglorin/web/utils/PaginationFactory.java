@@ -0,0 +1,232 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Неизменяемая фабрика {@link Pagination} с заранее заданными размером страницы и количеством страниц в наборе.</p>
+ * <p>В отличие от {@link PaginationBuilder}, фабрика не хранит состояния запроса, поэтому один экземпляр можно
+ * использовать из всех потоков одновременно, например как singleton бин. Каждый вызов создает только сам
+ * {@link Pagination}.</p>
+ * <p>Для часто повторяющихся запросов можно включить кэш готовых экземпляров через {@link #withCache(int)}.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ * @see PaginationBuilder
+ */
+public final class PaginationFactory {
+
+	private final int listSize;
+
+	private final int pagesCount;
+
+	private final PageWindowStrategy strategy;
+
+	/**
+	 * Кэш с прямым отображением: каждый ключ может находиться только в одной ячейке, новый экземпляр вытесняет
+	 * старый. null если кэш не используется
+	 */
+	private final AtomicReferenceArray<Entry> cache;
+
+	private final LongAdder hits;
+
+	private final LongAdder misses;
+
+	/**
+	 * Фабрика с размерами по умолчанию {@link PaginationBuilder#DEFAULT_LIST_SIZE} и
+	 * {@link PaginationBuilder#DEFAULT_SHOWED_PAGES_COUNT}
+	 */
+	public PaginationFactory () {
+		this(PaginationBuilder.DEFAULT_LIST_SIZE, PaginationBuilder.DEFAULT_SHOWED_PAGES_COUNT);
+	}
+
+	/**
+	 * @param itemsListSize   количество элементов на странице, значения меньше 1 заменяются на 1
+	 * @param pagesCountInSet количество страниц в наборе, значения меньше 1 заменяются на 1
+	 */
+	public PaginationFactory (int itemsListSize, int pagesCountInSet) {
+		this(itemsListSize, pagesCountInSet, PageWindowStrategy.BLOCKS);
+	}
+
+	/**
+	 * @param itemsListSize   количество элементов на странице, значения меньше 1 заменяются на 1
+	 * @param pagesCountInSet количество страниц в наборе, значения меньше 1 заменяются на 1
+	 * @param strategy        способ выбора страниц в наборе
+	 */
+	public PaginationFactory (int itemsListSize, int pagesCountInSet, PageWindowStrategy strategy) {
+		this(itemsListSize > 0 ? itemsListSize : 1, pagesCountInSet > 0 ? pagesCountInSet : 1, strategy, null);
+		if (strategy == null) {
+			throw new IllegalArgumentException("Required argument strategy is null");
+		}
+	}
+
+	private PaginationFactory (int listSize, int pagesCount, PageWindowStrategy strategy, AtomicReferenceArray<Entry> cache) {
+		this.listSize = listSize;
+		this.pagesCount = pagesCount;
+		this.strategy = strategy;
+		this.cache = cache;
+		this.hits = cache == null ? null : new LongAdder();
+		this.misses = cache == null ? null : new LongAdder();
+	}
+
+	/**
+	 * <p>Создает фабрику с теми же настройками и кэшем готовых {@link Pagination}. Экземпляры неизменяемы, поэтому
+	 * один и тот же экземпляр отдается всем потокам, запросившим те же общее количество элементов, страницу и размер
+	 * страницы.</p>
+	 * <p>Кэш работает без блокировок: ячейка выбирается по хешу ключа, при совпадении ячейки новый экземпляр вытесняет
+	 * старый. Размер кэша ограничен и округляется вверх до степени двойки.</p>
+	 *
+	 * @param maxEntries максимальное количество хранимых экземпляров
+	 * @return новую фабрику с кэшем
+	 */
+	public PaginationFactory withCache (int maxEntries) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("Required argument maxEntries is less than 1");
+		}
+		int size = Integer.highestOneBit(Math.min(maxEntries, 1 << 30));
+		if (size < maxEntries) {
+			size <<= 1;
+		}
+		return new PaginationFactory(listSize, pagesCount, strategy, new AtomicReferenceArray<>(size));
+	}
+
+	/**
+	 * @return количество элементов на странице
+	 */
+	public int getItemsListSize () {
+		return listSize;
+	}
+
+	/**
+	 * @return количество страниц в наборе
+	 */
+	public int getPagesCountInSet () {
+		return pagesCount;
+	}
+
+	/**
+	 * @return способ выбора страниц в наборе
+	 */
+	public PageWindowStrategy getPageWindowStrategy () {
+		return strategy;
+	}
+
+	/**
+	 * Создает нумерацию для текущей страницы
+	 *
+	 * @param totalItemsCount общее количество элементов, отрицательные значения заменяются на 0
+	 * @param currentPage     номер текущей страницы, значения меньше 1 заменяются на 1
+	 * @return новый экземпляр реализации интерфейса {@link Pagination}
+	 */
+	public Pagination of (int totalItemsCount, int currentPage) {
+		return of(totalItemsCount, currentPage, listSize);
+	}
+
+	/**
+	 * Создает нумерацию для текущей страницы с размером страницы, выбранным пользователем
+	 *
+	 * @param totalItemsCount общее количество элементов, отрицательные значения заменяются на 0
+	 * @param currentPage     номер текущей страницы, значения меньше 1 заменяются на 1
+	 * @param itemsListSize   количество элементов на странице, значения меньше 1 заменяются на 1
+	 * @return новый экземпляр реализации интерфейса {@link Pagination}
+	 */
+	public Pagination of (int totalItemsCount, int currentPage, int itemsListSize) {
+		int total = totalItemsCount >= 0 ? totalItemsCount : 0;
+		int page = currentPage > 0 ? currentPage : 1;
+		int size = itemsListSize > 0 ? itemsListSize : 1;
+		if (cache == null) {
+			return new PaginationImpl(total, page, size, pagesCount, true, strategy);
+		}
+		int index = index(total, page, size);
+		Entry entry = cache.get(index);
+		if (entry != null && entry.total == total && entry.page == page && entry.size == size) {
+			hits.increment();
+			return entry.pagination;
+		}
+		misses.increment();
+		Pagination pagination = new PaginationImpl(total, page, size, pagesCount, true, strategy);
+		cache.set(index, new Entry(total, page, size, pagination));
+		return pagination;
+	}
+
+	/**
+	 * Создает нумерацию для количества элементов больше {@link Integer#MAX_VALUE}
+	 *
+	 * @param totalItemsCount общее количество элементов, отрицательные значения заменяются на 0
+	 * @param currentPage     номер текущей страницы, значения меньше 1 заменяются на 1
+	 * @return новый экземпляр реализации интерфейса {@link LongPagination}
+	 */
+	public LongPagination ofLong (long totalItemsCount, long currentPage) {
+		return new LongPaginationImpl(totalItemsCount >= 0 ? totalItemsCount : 0, currentPage > 0 ? currentPage : 1, listSize, pagesCount);
+	}
+
+	/**
+	 * @return количество экземпляров, найденных в кэше, или 0 если кэш не используется
+	 */
+	public long getCacheHits () {
+		return hits == null ? 0 : hits.sum();
+	}
+
+	/**
+	 * @return количество экземпляров, которых не было в кэше, или 0 если кэш не используется
+	 */
+	public long getCacheMisses () {
+		return misses == null ? 0 : misses.sum();
+	}
+
+	/**
+	 * @return долю запросов, обслуженных из кэша, от 0 до 1
+	 */
+	public double getCacheHitRate () {
+		long hits = getCacheHits();
+		long total = hits + getCacheMisses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * @return номер ячейки кэша для ключа
+	 */
+	private int index (int total, int page, int size) {
+		int hash = (total * 31 + page) * 31 + size;
+		// Перемешивание битов, чтобы соседние страницы не попадали в соседние ячейки по одному шаблону
+		hash *= 0x9E3779B9;
+		return (hash ^ hash >>> 16) & cache.length() - 1;
+	}
+
+	/**
+	 * Ячейка кэша. Все поля неизменяемы, поэтому ячейка безопасно публикуется через {@link AtomicReferenceArray}
+	 */
+	private static final class Entry {
+
+		private final int total;
+
+		private final int page;
+
+		private final int size;
+
+		private final Pagination pagination;
+
+		private Entry (int total, int page, int size, Pagination pagination) {
+			this.total = total;
+			this.page = page;
+			this.size = size;
+			this.pagination = pagination;
+		}
+	}
+}
@@ -15,7 +15,6 @@
  */
 package com.artglorin.web.utils;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -30,26 +29,52 @@ public class PaginationImpl implements Pagination {
 	/**
 	 * номер текущей страницы
 	 */
-	private int current;
+	private final int current;
 
 	/**
-	 * Метка следующего набора
+	 * Номер первой страницы в наборе
 	 */
-	private boolean nextSet;
+	private final int first;
 
 	/**
-	 * Список страниц в наборе
+	 * Номер последней страницы в наборе
 	 */
-	private List<Integer> pages;
+	private final int last;
 
 	/**
 	 * Метка следующего набора
 	 */
-	private boolean previousSet;
+	private final boolean nextSet;
 
+	/**
+	 * Метка следующего набора
+	 */
+	private final boolean previousSet;
 
 	/**
-	 * Конструктор устанавливающий все необходимые параметры
+	 * Метка того, что первая страница показывается отдельно от набора
+	 */
+	private final boolean showFirst;
+
+	/**
+	 * Метка того, что последняя страница показывается отдельно от набора
+	 */
+	private final boolean showLast;
+
+	/**
+	 * Общее количество страниц
+	 */
+	private final int totalPages;
+
+	/**
+	 * Метка того, что общее количество элементов точное, а не оценка снизу
+	 */
+	private final boolean exact;
+
+
+	/**
+	 * Конструктор устанавливающий все необходимые параметры. Границы набора вычисляются за постоянное время,
+	 * список страниц не создается.
 	 *
 	 * @param totalItemsCount общее число существующих элементов
 	 * @param currentPage     номер текущей страницы
@@ -57,38 +82,47 @@ public class PaginationImpl implements Pagination {
 	 * @param pagesInSet      количество страниц в наборе
 	 */
 	PaginationImpl (int totalItemsCount, int currentPage, int itemsListSize, int pagesInSet) {
+		this(totalItemsCount, currentPage, itemsListSize, pagesInSet, true, PageWindowStrategy.BLOCKS);
+	}
+
+	/**
+	 * Конструктор для точного общего количества элементов или его оценки снизу
+	 *
+	 * @param totalItemsCount общее число существующих элементов или оценка снизу
+	 * @param currentPage     номер текущей страницы
+	 * @param itemsListSize   количество отображаемых элементов на страницу
+	 * @param pagesInSet      количество страниц в наборе
+	 * @param exact           false если элементов может быть больше чем totalItemsCount
+	 * @param strategy        способ выбора страниц в наборе
+	 */
+	PaginationImpl (int totalItemsCount, int currentPage, int itemsListSize, int pagesInSet, boolean exact, PageWindowStrategy strategy) {
 
 		// Подсчитаем сколько всего будет страниц
 		int totalPages = totalItemsCount % itemsListSize > 0 ? totalItemsCount / itemsListSize + 1 : totalItemsCount / itemsListSize;
 		totalPages = totalPages == 0 ? 1 : totalPages;
-		// Проверим и установим правильное значение текущей страницы
+		// Проверим и установим правильное значение текущей страницы. При оценке снизу страница за оценкой может
+		// существовать, поэтому она не уменьшается
 		if (currentPage < 1) {
 			currentPage = 1;
 		} else if (currentPage > totalPages) {
-			currentPage = totalPages;
+			if (exact) {
+				currentPage = totalPages;
+			} else {
+				totalPages = currentPage;
+			}
 		}
+		this.exact = exact;
 		this.current = currentPage;
-		// Инициализируем номера первой и последней страницы в наборе
-		int firstPage = pagesInSet;
-		while (firstPage < currentPage) {
-			firstPage += pagesInSet;
-		}
-		firstPage -= pagesInSet;
-		int lastPage = firstPage + pagesInSet;
-		if (lastPage > totalPages) {
-			lastPage = totalPages;
-		}
-		// Узнаем сколько в итоге страниц будет в наборе
-		int pagesInCurrentView = lastPage - firstPage;
-		// Инициализируем список и заполним его значениями
-		this.pages = new ArrayList<>(pagesInCurrentView);
-		for (int i = 1; i <= pagesInCurrentView; i++) {
-			this.pages.add(i + firstPage);
-		}
+		this.totalPages = totalPages;
+		this.first = strategy.getFirstPageInSet(currentPage, totalPages, pagesInSet);
+		this.last = strategy.getLastPageInSet(first, totalPages, pagesInSet);
 		// Установим метку того, что есть предыдущие  страницы
-		this.previousSet = currentPage > pagesInSet;
-		// Установим метку того, что есть следующие страницы
-		this.nextSet = this.pages.get(pagesInCurrentView - 1) < totalPages;
+		this.previousSet = first > 1;
+		// Установим метку того, что есть следующие страницы. При оценке снизу они могут быть и за полным набором
+		this.nextSet = this.last < totalPages || !exact && this.last - first + 1 == pagesInSet;
+		// Последняя страница при оценке снизу неизвестна, поэтому отдельно не показывается
+		this.showFirst = strategy.isShowingEdgePages() && first > 1;
+		this.showLast = strategy.isShowingEdgePages() && exact && last < totalPages;
 	}
 
 	@Override
@@ -99,17 +133,20 @@ public class PaginationImpl implements Pagination {
 
 	@Override
 	public int getFirstPageInSet () {
-		return pages.isEmpty() ? current : pages.get(0);
+		return first;
 	}
 
 	@Override
 	public int getLastPageInSet () {
-		return pages.isEmpty() ? current : pages.get(pages.size() - 1);
+		return last;
 	}
 
+	/**
+	 * @return неизменяемое представление номеров страниц, которое вычисляет номера по индексу
+	 */
 	@Override
 	public List<Integer> getSetPages () {
-		return pages;
+		return new PageRange(first, last);
 	}
 
 	@Override
@@ -121,4 +158,24 @@ public class PaginationImpl implements Pagination {
 	public boolean isExistPreviousSet () {
 		return previousSet;
 	}
+
+	@Override
+	public boolean isShowFirstPage () {
+		return showFirst;
+	}
+
+	@Override
+	public boolean isShowLastPage () {
+		return showLast;
+	}
+
+	@Override
+	public int getTotalPages () {
+		return totalPages;
+	}
+
+	@Override
+	public boolean isTotalItemsCountExact () {
+		return exact;
+	}
 }
@@ -0,0 +1,377 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Отрисовывает нумерацию страниц в готовые байты HTML или JSON в кодировке UTF-8, которые можно сразу записать в
+ * поток ответа без шаблонизатора.</p>
+ * <p>Ссылки на страницы строятся по шаблону адреса, в котором номер страницы обозначен как {page}, например
+ * "/listItems?page={page}". Части шаблона экранируются один раз при создании.</p>
+ * <p>Результат зависит только от шаблона и от значений нумерации, поэтому готовые байты кэшируются. Кэш работает без
+ * блокировок и ограничен по размеру так же, как в {@link PaginationFactory#withCache(int)}. Экземпляр неизменяем и
+ * может использоваться из всех потоков.</p>
+ * <p>HTML повторяет разметку Bootstrap из примеров:</p>
+ * <pre>
+ * &lt;nav role="navigation"&gt;&lt;ul class="pager"&gt;
+ *     &lt;li class="previous"&gt;&lt;a href="/list?page=7"&gt;&amp;larr;&lt;/a&gt;&lt;/li&gt;&lt;li&gt;&lt;a href="/list?page=6"&gt;&amp;hellip;&lt;/a&gt;&lt;/li&gt;
+ *     &lt;li&gt;&lt;a href="/list?page=7"&gt;7&lt;/a&gt;&lt;/li&gt;&lt;li class="active"&gt;&lt;a href="/list?page=8"&gt;8&lt;/a&gt;&lt;/li&gt;...
+ *     &lt;li&gt;&lt;a href="/list?page=13"&gt;&amp;hellip;&lt;/a&gt;&lt;/li&gt;&lt;li class="next"&gt;&lt;a href="/list?page=9"&gt;&amp;rarr;&lt;/a&gt;&lt;/li&gt;
+ * &lt;/ul&gt;&lt;/nav&gt;
+ * </pre>
+ * <p>Стрелки ведут на соседние страницы, как previous и next в JSON и prev и next в заголовке Link, а многоточия - на
+ * соседние наборы, как previousSet и nextSet в JSON ({@link PaginationSerializer}).</p>
+ * <p>Если первая и последняя страницы показываются отдельно от набора ({@link Pagination#isShowFirstPage()},
+ * {@link Pagination#isShowLastPage()}), ссылки на них выводятся между стрелкой и многоточием.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public final class PaginationRenderer {
+
+	/**
+	 * Обозначение номера страницы в шаблоне адреса
+	 */
+	public static final String PAGE_PLACEHOLDER = PaginationSerializer.PAGE_PLACEHOLDER;
+
+	/**
+	 * Размер кэша по умолчанию
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+
+	private final String urlTemplate;
+
+	/**
+	 * Части шаблона между обозначениями номера страницы, экранированные для HTML
+	 */
+	private final String[] htmlParts;
+
+	/**
+	 * Формирует JSON, чтобы формат совпадал с {@link PaginationSerializer#appendJson(Pagination, Appendable)}
+	 */
+	private final PaginationSerializer serializer;
+
+	private final AtomicReferenceArray<Entry> htmlCache;
+
+	private final AtomicReferenceArray<Entry> jsonCache;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Отрисовщик с кэшем размера {@link #DEFAULT_CACHE_SIZE}
+	 *
+	 * @param urlTemplate шаблон адреса страницы с обозначением {@link #PAGE_PLACEHOLDER}
+	 */
+	public PaginationRenderer (String urlTemplate) {
+		this(urlTemplate, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param urlTemplate шаблон адреса страницы с обозначением {@link #PAGE_PLACEHOLDER}
+	 * @param cacheSize   количество хранимых результатов каждого формата, 0 отключает кэш
+	 */
+	public PaginationRenderer (String urlTemplate, int cacheSize) {
+		if (urlTemplate == null) {
+			throw new IllegalArgumentException("Required argument urlTemplate is null");
+		}
+		if (!urlTemplate.contains(PAGE_PLACEHOLDER)) {
+			throw new IllegalArgumentException("Url template has no " + PAGE_PLACEHOLDER + ": " + urlTemplate);
+		}
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("Required argument cacheSize is negative");
+		}
+		this.urlTemplate = urlTemplate;
+		String[] parts = urlTemplate.split("\\{page\\}", -1);
+		htmlParts = new String[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			htmlParts[i] = escapeHtml(parts[i]);
+		}
+		serializer = new PaginationSerializer(urlTemplate);
+		if (cacheSize == 0) {
+			htmlCache = null;
+			jsonCache = null;
+		} else {
+			int size = Integer.highestOneBit(Math.min(cacheSize, 1 << 30));
+			if (size < cacheSize) {
+				size <<= 1;
+			}
+			htmlCache = new AtomicReferenceArray<>(size);
+			jsonCache = new AtomicReferenceArray<>(size);
+		}
+	}
+
+	/**
+	 * @return шаблон адреса страницы
+	 */
+	public String getUrlTemplate () {
+		return urlTemplate;
+	}
+
+	/**
+	 * @param pagination нумерация страниц
+	 * @return копию готовых байт HTML
+	 */
+	public byte[] renderHtml (Pagination pagination) {
+		return html(pagination).clone();
+	}
+
+	/**
+	 * Записывает HTML в поток без копирования готовых байт
+	 *
+	 * @param pagination нумерация страниц
+	 * @param out        поток, в который нужно записать HTML. Поток не закрывается.
+	 * @throws IOException
+	 */
+	public void writeHtml (Pagination pagination, OutputStream out) throws IOException {
+		out.write(html(pagination));
+	}
+
+	/**
+	 * JSON имеет тот же вид, что и у {@link PaginationSerializer#appendJson(Pagination, Appendable)}
+	 *
+	 * @param pagination нумерация страниц
+	 * @return копию готовых байт JSON
+	 */
+	public byte[] renderJson (Pagination pagination) {
+		return json(pagination).clone();
+	}
+
+	/**
+	 * Записывает JSON в поток без копирования готовых байт
+	 *
+	 * @param pagination нумерация страниц
+	 * @param out        поток, в который нужно записать JSON. Поток не закрывается.
+	 * @throws IOException
+	 * @see PaginationSerializer#appendJson(Pagination, Appendable)
+	 */
+	public void writeJson (Pagination pagination, OutputStream out) throws IOException {
+		out.write(json(pagination));
+	}
+
+	/**
+	 * @return количество результатов, найденных в кэше
+	 */
+	public long getCacheHits () {
+		return hits.sum();
+	}
+
+	/**
+	 * @return количество результатов, которых не было в кэше
+	 */
+	public long getCacheMisses () {
+		return misses.sum();
+	}
+
+	private byte[] html (Pagination pagination) {
+		Entry key = new Entry(pagination, null);
+		byte[] cached = lookup(htmlCache, key);
+		if (cached != null) {
+			return cached;
+		}
+		StringBuilder html = new StringBuilder(128 + 64 * (key.last - key.first + 1));
+		html.append("<nav role=\"navigation\"><ul class=\"pager\">");
+		if (key.current > 1) {
+			html.append("<li class=\"previous\"><a href=\"");
+			url(html, htmlParts, key.current - 1);
+			html.append("\">&larr;</a></li>");
+		}
+		if (key.showFirst) {
+			page(html, 1, key.current);
+		}
+		// Многоточие только если между отдельно показанной страницей и набором пропущены страницы
+		if (key.first > (key.showFirst ? 2 : 1)) {
+			ellipsis(html, key.first - 1);
+		}
+		PrimitiveIterator.OfInt pages = pagination.getSetPagesIterator();
+		while (pages.hasNext()) {
+			page(html, pages.nextInt(), key.current);
+		}
+		if (key.nextSet && !(key.showLast && key.last == key.totalPages - 1)) {
+			ellipsis(html, key.last + 1);
+		}
+		if (key.showLast) {
+			page(html, key.totalPages, key.current);
+		}
+		if (key.nextPage) {
+			html.append("<li class=\"next\"><a href=\"");
+			url(html, htmlParts, key.current + 1);
+			html.append("\">&rarr;</a></li>");
+		}
+		html.append("</ul></nav>");
+		return store(htmlCache, key, html);
+	}
+
+	private byte[] json (Pagination pagination) {
+		Entry key = new Entry(pagination, null);
+		byte[] cached = lookup(jsonCache, key);
+		if (cached != null) {
+			return cached;
+		}
+		return store(jsonCache, key, serializer.toJson(pagination));
+	}
+
+	private byte[] lookup (AtomicReferenceArray<Entry> cache, Entry key) {
+		if (cache == null) {
+			return null;
+		}
+		Entry entry = cache.get(key.hash & cache.length() - 1);
+		if (entry != null && entry.sameKey(key)) {
+			hits.increment();
+			return entry.bytes;
+		}
+		misses.increment();
+		return null;
+	}
+
+	private byte[] store (AtomicReferenceArray<Entry> cache, Entry key, CharSequence text) {
+		byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+		if (cache != null) {
+			cache.set(key.hash & cache.length() - 1, new Entry(key, bytes));
+		}
+		return bytes;
+	}
+
+	/**
+	 * Добавляет ссылку на страницу, отмечая текущую
+	 */
+	private void page (StringBuilder html, int page, int current) {
+		html.append(page == current ? "<li class=\"active\"><a href=\"" : "<li><a href=\"");
+		url(html, htmlParts, page);
+		html.append("\">").append(page).append("</a></li>");
+	}
+
+	/**
+	 * Добавляет отметку пропущенных страниц со ссылкой на соседний набор
+	 */
+	private void ellipsis (StringBuilder html, int page) {
+		html.append("<li><a href=\"");
+		url(html, htmlParts, page);
+		html.append("\">&hellip;</a></li>");
+	}
+
+	/**
+	 * Добавляет адрес страницы, подставляя номер вместо каждого обозначения в шаблоне
+	 */
+	private static void url (StringBuilder builder, String[] parts, int page) {
+		builder.append(parts[0]);
+		for (int i = 1; i < parts.length; i++) {
+			builder.append(page).append(parts[i]);
+		}
+	}
+
+	/**
+	 * Экранирует строку для значения аттрибута HTML
+	 */
+	private static String escapeHtml (String value) {
+		StringBuilder result = new StringBuilder(value.length());
+		char c;
+		for (int i = 0; i < value.length(); i++) {
+			c = value.charAt(i);
+			switch (c) {
+				case '&':
+					result.append("&amp;");
+					break;
+				case '"':
+					result.append("&quot;");
+					break;
+				case '<':
+					result.append("&lt;");
+					break;
+				case '>':
+					result.append("&gt;");
+					break;
+				default:
+					result.append(c);
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Значения нумерации, от которых зависит результат, и готовые байты. Все поля неизменяемы, поэтому ячейка
+	 * безопасно публикуется через {@link AtomicReferenceArray}.
+	 */
+	private static final class Entry {
+
+		private final int current;
+
+		private final int first;
+
+		private final int last;
+
+		private final int totalPages;
+
+		private final boolean previousSet;
+
+		private final boolean nextSet;
+
+		private final boolean nextPage;
+
+		private final boolean showFirst;
+
+		private final boolean showLast;
+
+		private final int hash;
+
+		private final byte[] bytes;
+
+		private Entry (Pagination pagination, byte[] bytes) {
+			this.current = pagination.getCurrentPage();
+			this.first = pagination.getFirstPageInSet();
+			this.last = pagination.getLastPageInSet();
+			this.totalPages = pagination.getTotalPages();
+			this.previousSet = pagination.isExistPreviousSet();
+			this.nextSet = pagination.isExistNextSet();
+			this.nextPage = PaginationSerializer.hasNextPage(pagination);
+			this.showFirst = pagination.isShowFirstPage();
+			this.showLast = pagination.isShowLastPage();
+			this.bytes = bytes;
+			int h = ((current * 31 + first) * 31 + last) * 31 + totalPages;
+			h = (h * 32 + (nextPage ? 16 : 0) + (previousSet ? 8 : 0) + (nextSet ? 4 : 0) + (showFirst ? 2 : 0) + (showLast ? 1 : 0))
+					* 0x9E3779B9;
+			this.hash = h ^ h >>> 16;
+		}
+
+		private Entry (Entry key, byte[] bytes) {
+			this.current = key.current;
+			this.first = key.first;
+			this.last = key.last;
+			this.totalPages = key.totalPages;
+			this.previousSet = key.previousSet;
+			this.nextSet = key.nextSet;
+			this.nextPage = key.nextPage;
+			this.showFirst = key.showFirst;
+			this.showLast = key.showLast;
+			this.hash = key.hash;
+			this.bytes = bytes;
+		}
+
+		private boolean sameKey (Entry other) {
+			return current == other.current && first == other.first && last == other.last
+					&& totalPages == other.totalPages && previousSet == other.previousSet && nextSet == other.nextSet
+					&& nextPage == other.nextPage && showFirst == other.showFirst && showLast == other.showLast;
+		}
+	}
+}
@@ -0,0 +1,422 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.PrimitiveIterator;
+
+/**
+ * <p>Записывает данные нумерации для REST ответов: заголовок Link по RFC 8288 и компактный JSON. Запись выполняется
+ * сразу в {@link Appendable} или {@link ByteBuffer}, без рефлексии и без промежуточных строк.</p>
+ * <p>Ссылки строятся по шаблону адреса, в котором номер страницы обозначен как {page}, так же как в
+ * {@link PaginationRenderer}. Части шаблона экранируются и кодируются в UTF-8 один раз при создании. Экземпляр
+ * неизменяем и может использоваться из всех потоков.</p>
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public final class PaginationSerializer {
+
+	/**
+	 * Обозначение номера страницы в шаблоне адреса
+	 */
+	public static final String PAGE_PLACEHOLDER = "{page}";
+
+	private final String urlTemplate;
+
+	/**
+	 * Части шаблона между обозначениями номера страницы как есть, для заголовка Link
+	 */
+	private final String[] linkParts;
+
+	/**
+	 * Части шаблона между обозначениями номера страницы, экранированные для JSON
+	 */
+	private final String[] jsonParts;
+
+	private final byte[][] linkBytes;
+
+	private final byte[][] jsonBytes;
+
+	/**
+	 * @param urlTemplate шаблон адреса страницы с обозначением {@link #PAGE_PLACEHOLDER}
+	 */
+	public PaginationSerializer (String urlTemplate) {
+		if (urlTemplate == null) {
+			throw new IllegalArgumentException("Required argument urlTemplate is null");
+		}
+		if (!urlTemplate.contains(PAGE_PLACEHOLDER)) {
+			throw new IllegalArgumentException("Url template has no " + PAGE_PLACEHOLDER + ": " + urlTemplate);
+		}
+		this.urlTemplate = urlTemplate;
+		linkParts = urlTemplate.split("\\{page\\}", -1);
+		jsonParts = new String[linkParts.length];
+		linkBytes = new byte[linkParts.length][];
+		jsonBytes = new byte[linkParts.length][];
+		for (int i = 0; i < linkParts.length; i++) {
+			jsonParts[i] = escapeJson(linkParts[i]);
+			linkBytes[i] = linkParts[i].getBytes(StandardCharsets.UTF_8);
+			jsonBytes[i] = jsonParts[i].getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * @return шаблон адреса страницы
+	 */
+	public String getUrlTemplate () {
+		return urlTemplate;
+	}
+
+	/**
+	 * <p>Записывает значение заголовка Link со ссылками на первую, предыдущую, следующую и последнюю страницы:</p>
+	 * <pre>
+	 * &lt;/list?page=1&gt;; rel="first", &lt;/list?page=4&gt;; rel="prev", &lt;/list?page=6&gt;; rel="next", &lt;/list?page=50&gt;; rel="last"
+	 * </pre>
+	 * <p>Ссылки prev и next отсутствуют на первой и последней странице. Ссылка last отсутствует, если общее количество
+	 * элементов известно только как оценка снизу.</p>
+	 *
+	 * @param pagination нумерация страниц
+	 * @param out        куда нужно записать значение заголовка
+	 * @throws IOException если out не смог принять данные
+	 */
+	public void appendLinkHeader (Pagination pagination, Appendable out) throws IOException {
+		link(pagination, new AppendableOutput(out, linkParts));
+	}
+
+	/**
+	 * @param pagination нумерация страниц
+	 * @return значение заголовка Link
+	 * @see #appendLinkHeader(Pagination, Appendable)
+	 */
+	public String toLinkHeader (Pagination pagination) {
+		StringBuilder header = new StringBuilder(64 + 4 * urlTemplate.length());
+		try {
+			appendLinkHeader(pagination, header);
+		} catch (IOException e) {
+			// StringBuilder не выбрасывает IOException
+			throw new UncheckedIOException(e);
+		}
+		return header.toString();
+	}
+
+	/**
+	 * Записывает значение заголовка Link в буфер в кодировке UTF-8 начиная с его текущей позиции
+	 *
+	 * @param pagination нумерация страниц
+	 * @param target     буфер, в который нужно записать значение
+	 * @return количество записанных байт
+	 * @throws BufferOverflowException если в буфере недостаточно места
+	 * @see #appendLinkHeader(Pagination, Appendable)
+	 */
+	public int writeLinkHeader (Pagination pagination, ByteBuffer target) {
+		int start = target.position();
+		link(pagination, new BufferOutput(target, linkBytes));
+		return target.position() - start;
+	}
+
+	/**
+	 * <p>Записывает компактный JSON вида:</p>
+	 * <pre>
+	 * {"current":8,"first":7,"last":12,"totalPages":50,"previous":"/list?page=7","next":"/list?page=9",
+	 * "previousSet":"/list?page=6","nextSet":"/list?page=13","pages":[{"page":7,"url":"/list?page=7"},...]}
+	 * </pre>
+	 * <p>Поля previous и next ссылаются на соседние страницы, так же как prev и next в заголовке Link, а previousSet и
+	 * nextSet - на соседние наборы. Поля равны null, если таких страниц или наборов нет. Если первая или
+	 * последняя страница показывается отдельно от набора ({@link Pagination#isShowFirstPage()},
+	 * {@link Pagination#isShowLastPage()}), перед pages добавляются поля
+	 * "firstPage":{"page":1,"url":"/list?page=1"} и "lastPage":{"page":50,"url":"/list?page=50"}.</p>
+	 *
+	 * @param pagination нумерация страниц
+	 * @param out        куда нужно записать JSON
+	 * @throws IOException если out не смог принять данные
+	 */
+	public void appendJson (Pagination pagination, Appendable out) throws IOException {
+		json(pagination, new AppendableOutput(out, jsonParts));
+	}
+
+	/**
+	 * @param pagination нумерация страниц
+	 * @return JSON строку
+	 * @see #appendJson(Pagination, Appendable)
+	 */
+	public String toJson (Pagination pagination) {
+		StringBuilder json = new StringBuilder(128 + (24 + urlTemplate.length()) * pagination.getPagesCountInSet());
+		try {
+			appendJson(pagination, json);
+		} catch (IOException e) {
+			// StringBuilder не выбрасывает IOException
+			throw new UncheckedIOException(e);
+		}
+		return json.toString();
+	}
+
+	/**
+	 * Записывает JSON в буфер в кодировке UTF-8 начиная с его текущей позиции
+	 *
+	 * @param pagination нумерация страниц
+	 * @param target     буфер, в который нужно записать JSON
+	 * @return количество записанных байт
+	 * @throws BufferOverflowException если в буфере недостаточно места
+	 * @see #appendJson(Pagination, Appendable)
+	 */
+	public int writeJson (Pagination pagination, ByteBuffer target) {
+		int start = target.position();
+		json(pagination, new BufferOutput(target, jsonBytes));
+		return target.position() - start;
+	}
+
+	private static <E extends Exception> void link (Pagination pagination, Output<E> out) throws E {
+		int current = pagination.getCurrentPage();
+		int totalPages = pagination.getTotalPages();
+		link(out, 1, "first");
+		if (current > 1) {
+			out.text(", ");
+			link(out, current - 1, "prev");
+		}
+		if (hasNextPage(pagination)) {
+			out.text(", ");
+			link(out, current + 1, "next");
+		}
+		if (pagination.isTotalItemsCountExact()) {
+			out.text(", ");
+			link(out, totalPages, "last");
+		}
+	}
+
+	private static <E extends Exception> void link (Output<E> out, int page, String rel) throws E {
+		out.text("<");
+		out.url(page);
+		out.text(">; rel=\"");
+		out.text(rel);
+		out.text("\"");
+	}
+
+	private static <E extends Exception> void json (Pagination pagination, Output<E> out) throws E {
+		int first = pagination.getFirstPageInSet();
+		int last = pagination.getLastPageInSet();
+		out.text("{\"current\":");
+		out.number(pagination.getCurrentPage());
+		out.text(",\"first\":");
+		out.number(first);
+		out.text(",\"last\":");
+		out.number(last);
+		out.text(",\"totalPages\":");
+		out.number(pagination.getTotalPages());
+		out.text(",\"previous\":");
+		link(out, pagination.getCurrentPage() > 1, pagination.getCurrentPage() - 1);
+		out.text(",\"next\":");
+		link(out, hasNextPage(pagination), pagination.getCurrentPage() + 1);
+		out.text(",\"previousSet\":");
+		link(out, pagination.isExistPreviousSet(), first - 1);
+		out.text(",\"nextSet\":");
+		link(out, pagination.isExistNextSet(), last + 1);
+		if (pagination.isShowFirstPage()) {
+			out.text(",\"firstPage\":");
+			page(out, 1);
+		}
+		if (pagination.isShowLastPage()) {
+			out.text(",\"lastPage\":");
+			page(out, pagination.getTotalPages());
+		}
+		out.text(",\"pages\":[");
+		PrimitiveIterator.OfInt pages = pagination.getSetPagesIterator();
+		while (pages.hasNext()) {
+			page(out, pages.nextInt());
+			if (pages.hasNext()) {
+				out.text(",");
+			}
+		}
+		out.text("]}");
+	}
+
+	/**
+	 * Записывает адрес страницы строкой JSON или null, если страницы нет
+	 */
+	private static <E extends Exception> void link (Output<E> out, boolean exists, int page) throws E {
+		if (exists) {
+			out.text("\"");
+			out.url(page);
+			out.text("\"");
+		} else {
+			out.text("null");
+		}
+	}
+
+	/**
+	 * @return true если после текущей страницы есть еще одна. При оценке снизу она может быть и за последней известной
+	 */
+	static boolean hasNextPage (Pagination pagination) {
+		int current = pagination.getCurrentPage();
+		return current < pagination.getTotalPages() || !pagination.isTotalItemsCountExact() && pagination.isExistNextSet();
+	}
+
+	private static <E extends Exception> void page (Output<E> out, int page) throws E {
+		out.text("{\"page\":");
+		out.number(page);
+		out.text(",\"url\":\"");
+		out.url(page);
+		out.text("\"}");
+	}
+
+	/**
+	 * Экранирует строку для значения строки JSON
+	 */
+	private static String escapeJson (String value) {
+		StringBuilder result = new StringBuilder(value.length());
+		char c;
+		for (int i = 0; i < value.length(); i++) {
+			c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				result.append('\\').append(c);
+			} else if (c < 0x20) {
+				result.append(String.format("\\u%04x", (int) c));
+			} else {
+				result.append(c);
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Место записи. Позволяет использовать одну и ту же разметку для {@link Appendable} и {@link ByteBuffer}.
+	 *
+	 * @param <E> исключение, которое может выбросить запись
+	 */
+	private interface Output<E extends Exception> {
+
+		/**
+		 * @param ascii строка только из символов ASCII
+		 */
+		void text (String ascii) throws E;
+
+		void number (int value) throws E;
+
+		/**
+		 * Записывает адрес страницы, подставляя номер вместо каждого обозначения в шаблоне
+		 */
+		void url (int page) throws E;
+	}
+
+	private static final class AppendableOutput implements Output<IOException> {
+
+		private final Appendable out;
+
+		private final String[] parts;
+
+		private AppendableOutput (Appendable out, String[] parts) {
+			this.out = out;
+			this.parts = parts;
+		}
+
+		@Override
+		public void text (String ascii) throws IOException {
+			out.append(ascii);
+		}
+
+		@Override
+		public void number (int value) throws IOException {
+			if (out instanceof StringBuilder) {
+				((StringBuilder) out).append(value);
+				return;
+			}
+			if (value < 0) {
+				out.append('-');
+				if (value == Integer.MIN_VALUE) {
+					out.append("2147483648");
+					return;
+				}
+				value = -value;
+			}
+			int divisor = 1;
+			while (value / divisor >= 10) {
+				divisor *= 10;
+			}
+			for (; divisor > 0; divisor /= 10) {
+				out.append((char) ('0' + value / divisor % 10));
+			}
+		}
+
+		@Override
+		public void url (int page) throws IOException {
+			out.append(parts[0]);
+			for (int i = 1; i < parts.length; i++) {
+				number(page);
+				out.append(parts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Пишет в буфер уже закодированные в UTF-8 части шаблона. Символы ASCII и цифры сначала собираются в небольшой
+	 * массив и переносятся в буфер одной операцией, что для прямых буферов значительно быстрее побайтовой записи.
+	 */
+	private static final class BufferOutput implements Output<RuntimeException> {
+
+		private final ByteBuffer target;
+
+		private final byte[][] parts;
+
+		private final byte[] scratch = new byte[32];
+
+		private BufferOutput (ByteBuffer target, byte[][] parts) {
+			this.target = target;
+			this.parts = parts;
+		}
+
+		@Override
+		public void text (String ascii) {
+			int length = ascii.length();
+			if (length > scratch.length) {
+				for (int i = 0; i < length; i++) {
+					target.put((byte) ascii.charAt(i));
+				}
+				return;
+			}
+			for (int i = 0; i < length; i++) {
+				scratch[i] = (byte) ascii.charAt(i);
+			}
+			target.put(scratch, 0, length);
+		}
+
+		@Override
+		public void number (int value) {
+			long magnitude = Math.abs((long) value);
+			int position = scratch.length;
+			do {
+				scratch[--position] = (byte) ('0' + magnitude % 10);
+				magnitude /= 10;
+			} while (magnitude > 0);
+			if (value < 0) {
+				scratch[--position] = '-';
+			}
+			target.put(scratch, position, scratch.length - position);
+		}
+
+		@Override
+		public void url (int page) {
+			target.put(parts[0]);
+			for (int i = 1; i < parts.length; i++) {
+				number(page);
+				target.put(parts[i]);
+			}
+		}
+	}
+}
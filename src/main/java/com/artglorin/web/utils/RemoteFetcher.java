@@ -0,0 +1,344 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import com.artglorin.web.utils.exceptions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Загрузка удаленных источников данных с учетом {@link FetchPolicy}
+ *
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+final class RemoteFetcher {
+
+	/**
+	 * Начальный размер буфера, если сервер не сообщил размер данных
+	 */
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+
+	/**
+	 * Максимальный размер буфера, выделяемого заранее по заявленному серверу размеру данных. Дальше буфер растет по
+	 * мере поступления данных, так что неверный Content-Length не приводит к выделению лишней памяти
+	 */
+	private static final int MAX_INITIAL_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Максимальный размер массива, который можно выделить
+	 */
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Сколько байт переносится в файл за один вызов transferFrom
+	 */
+	private static final long TRANSFER_CHUNK = 1 << 20;
+
+	private RemoteFetcher () {
+	}
+
+	/**
+	 * Загружает источник данных
+	 *
+	 * @param value         адрес источника
+	 * @param policy        ограничения загрузки
+	 * @param cache         кеш загруженных данных, может быть null
+	 * @param documentBytes счетчик байт, загруженных для текущего документа
+	 * @param target        файл, в который нужно записать данные вместо массива, может быть null
+	 * @return загруженные данные
+	 * @throws ExtractionException более подробные данные об ошибках можно посмотреть в {@link com.artglorin.web.utils.exceptions}
+	 */
+	static Result fetch (String value, FetchPolicy policy, MediaCache cache, AtomicLong documentBytes, Target target) throws ExtractionException {
+		MediaCache.Entry cached = cache != null ? cache.get(value) : null;
+		if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+			cache.recordHit();
+			return fromCache(value, cached, policy, documentBytes, target);
+		}
+		URL url;
+		try {
+			url = new URL(value);
+		} catch (MalformedURLException e) {
+			throw new ExtractionException("Cannot create URL. Exception: " + e.toString());
+		}
+		URLConnection connection;
+		int status = -1;
+		try {
+			connection = url.openConnection();
+			connection.setConnectTimeout(policy.getConnectTimeout());
+			connection.setReadTimeout(policy.getReadTimeout());
+			if (cached != null) {
+				if (cached.getETag() != null) {
+					connection.setRequestProperty("If-None-Match", cached.getETag());
+				}
+				if (cached.getLastModified() != null) {
+					connection.setRequestProperty("If-Modified-Since", cached.getLastModified());
+				}
+			}
+			connection.connect();
+			if (connection instanceof HttpURLConnection) {
+				// Дождемся заголовков ответа здесь, чтобы таймаут чтения не потерялся внутри getContentType
+				status = ((HttpURLConnection) connection).getResponseCode();
+			}
+		} catch (SocketTimeoutException e) {
+			throw new FetchTimeoutException(value);
+		} catch (IOException e) {
+			throw new ExtractionException("Cannot open connection");
+		}
+		if (cached != null && status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+			cache.recordRevalidation();
+			return fromCache(value, cache.revalidate(value, cached, connection), policy, documentBytes, target);
+		}
+		String contentType = connection.getContentType();
+		checkType(contentType);
+		// Быстрая проверка размера до чтения тела ответа
+		long contentLength = connection.getContentLengthLong();
+		if (contentLength > policy.getMaxBytesPerAsset()) {
+			throw new SizeLimitExceededException(value, policy.getMaxBytesPerAsset());
+		}
+		if (contentLength > 0 && documentBytes.get() + contentLength > policy.getMaxBytesPerDocument()) {
+			throw new SizeLimitExceededException(value, policy.getMaxBytesPerDocument());
+		}
+		String type = type(contentType);
+		String extension = extension(contentType);
+		if (target != null) {
+			return transfer(value, connection, type, extension, policy, cache, documentBytes, target);
+		}
+		byte[] data;
+		try (InputStream in = connection.getInputStream()) {
+			data = read(in, contentLength, value, policy, documentBytes);
+		} catch (SocketTimeoutException e) {
+			throw new FetchTimeoutException(value);
+		} catch (IOException e) {
+			throw new ExtractionException("Cannot get bytes from source: " + value);
+		}
+		if (cache != null) {
+			cache.recordMiss();
+			cache.put(value, connection, data);
+			// Кеш хранит свой массив, чтобы изменения в описателе не испортили сохраненные данные
+			data = data.clone();
+		}
+		return new Result(type, extension, data);
+	}
+
+	/**
+	 * Переносит тело ответа прямо в файл через {@link FileChannel#transferFrom}, не собирая данные в массив
+	 */
+	private static Result transfer (String value, URLConnection connection, String type, String extension, FetchPolicy policy,
+	                                MediaCache cache, AtomicLong documentBytes, Target target) throws ExtractionException {
+		Path path;
+		long size = 0;
+		try (InputStream in = connection.getInputStream(); ResourcesHelper.Output output = target.open(type, extension)) {
+			ReadableByteChannel source = Channels.newChannel(in);
+			long transferred;
+			while ((transferred = output.getChannel().transferFrom(source, size, chunk(size, policy, documentBytes))) > 0) {
+				size += transferred;
+				if (size > policy.getMaxBytesPerAsset()) {
+					throw new SizeLimitExceededException(value, policy.getMaxBytesPerAsset());
+				}
+				if (documentBytes.addAndGet(transferred) > policy.getMaxBytesPerDocument()) {
+					throw new SizeLimitExceededException(value, policy.getMaxBytesPerDocument());
+				}
+			}
+			size = output.commit();
+			path = output.getPath();
+		} catch (SocketTimeoutException e) {
+			throw new FetchTimeoutException(value);
+		} catch (IOException e) {
+			throw new ExtractionException("Cannot save bytes from source: " + value + ". Exception: " + e.toString());
+		}
+		if (cache != null) {
+			cache.recordMiss();
+			cache.put(value, connection, path, size);
+		}
+		return new Result(type, extension, path, size);
+	}
+
+	private static void checkType (String contentType) throws InvalidTypeException, InvalidExtensionException {
+		if (contentType == null) {
+			throw new InvalidTypeException(null);
+		}
+		String lowerContentType = contentType.toLowerCase();
+		if (!lowerContentType.startsWith("image/") && !lowerContentType.startsWith("audio/") && !lowerContentType.startsWith("video/")) {
+			throw new InvalidTypeException(contentType);
+		}
+		// Тип и расширение становятся частью пути файла, сервер не должен управлять этим путем
+		if (!DataUri.isToken(extension(contentType))) {
+			throw new InvalidExtensionException(contentType);
+		}
+	}
+
+	/**
+	 * @param contentType проверенное значение заголовка Content-Type
+	 * @return тип данных, часть до "/"
+	 */
+	private static String type (String contentType) {
+		return contentType.substring(0, contentType.indexOf("/"));
+	}
+
+	/**
+	 * @param contentType проверенное значение заголовка Content-Type
+	 * @return расширение, часть после "/" без параметров
+	 */
+	private static String extension (String contentType) {
+		int end = contentType.indexOf(';');
+		return contentType.substring(contentType.indexOf("/") + 1, end < 0 ? contentType.length() : end).trim();
+	}
+
+	/**
+	 * Возвращает копию сохраненных данных или записывает их в файл, соблюдая те же ограничения, что и при загрузке
+	 */
+	private static Result fromCache (String value, MediaCache.Entry entry, FetchPolicy policy, AtomicLong documentBytes, Target target) throws ExtractionException {
+		String contentType = entry.getContentType();
+		checkType(contentType);
+		if (entry.getSize() > policy.getMaxBytesPerAsset()) {
+			throw new SizeLimitExceededException(value, policy.getMaxBytesPerAsset());
+		}
+		if (documentBytes.addAndGet(entry.getSize()) > policy.getMaxBytesPerDocument()) {
+			throw new SizeLimitExceededException(value, policy.getMaxBytesPerDocument());
+		}
+		String type = type(contentType);
+		String extension = extension(contentType);
+		if (target == null) {
+			return new Result(type, extension, entry.getData().clone());
+		}
+		try (ResourcesHelper.Output output = target.open(type, extension)) {
+			ByteBuffer data = ByteBuffer.wrap(entry.getData());
+			while (data.hasRemaining()) {
+				output.getChannel().write(data);
+			}
+			return new Result(type, extension, output.getPath(), output.commit());
+		} catch (IOException e) {
+			throw new ExtractionException("Cannot save bytes from source: " + value + ". Exception: " + e.toString());
+		}
+	}
+
+	/**
+	 * Ограничивает часть, переносимую за один вызов transferFrom, оставшимся до лимитов размером и одним байтом сверх
+	 * него, чтобы превышение лимита обнаруживалось сразу, а не после переноса целой части
+	 */
+	private static long chunk (long size, FetchPolicy policy, AtomicLong documentBytes) {
+		long allowed = Math.min(policy.getMaxBytesPerAsset() - size, policy.getMaxBytesPerDocument() - documentBytes.get());
+		return allowed < TRANSFER_CHUNK ? Math.max(allowed, 0) + 1 : TRANSFER_CHUNK;
+	}
+
+	/**
+	 * Читает поток, прерывая чтение как только превышен один из лимитов. Если размер известен заранее, сразу
+	 * выделяется массив нужного размера, но не больше {@link #MAX_INITIAL_BUFFER_SIZE}.
+	 */
+	private static byte[] read (InputStream in, long contentLength, String value, FetchPolicy policy, AtomicLong documentBytes) throws IOException, SizeLimitExceededException {
+		byte[] buffer = new byte[contentLength >= 0
+				? (int) Math.min(contentLength, Math.min(policy.getMaxBytesPerAsset(), MAX_INITIAL_BUFFER_SIZE))
+				: INITIAL_BUFFER_SIZE];
+		int size = 0;
+		int read;
+		while (true) {
+			if (size == buffer.length) {
+				// Буфер заполнен, проверим, закончились ли данные, прежде чем увеличивать его
+				read = in.read();
+				if (read < 0) {
+					break;
+				}
+				if (size == MAX_ARRAY_SIZE) {
+					throw new SizeLimitExceededException(value, MAX_ARRAY_SIZE);
+				}
+				long capacity = Math.min(MAX_ARRAY_SIZE, Math.max(INITIAL_BUFFER_SIZE, (long) buffer.length * 2));
+				if (contentLength > size) {
+					// Не выделяем больше, чем обещал сервер
+					capacity = Math.min(capacity, contentLength);
+				}
+				buffer = Arrays.copyOf(buffer, (int) capacity);
+				buffer[size] = (byte) read;
+				read = 1;
+			} else {
+				read = in.read(buffer, size, buffer.length - size);
+				if (read < 0) {
+					break;
+				}
+			}
+			size += read;
+			if (size > policy.getMaxBytesPerAsset()) {
+				throw new SizeLimitExceededException(value, policy.getMaxBytesPerAsset());
+			}
+			if (documentBytes.addAndGet(read) > policy.getMaxBytesPerDocument()) {
+				throw new SizeLimitExceededException(value, policy.getMaxBytesPerDocument());
+			}
+		}
+		return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+	}
+
+	/**
+	 * Файл, в который нужно записать загруженные данные
+	 */
+	interface Target {
+
+		/**
+		 * Вызывается, когда тип данных уже известен, а данные еще не загружены
+		 *
+		 * @param type      тип данных
+		 * @param extension расширение
+		 * @return открытый для записи файл
+		 * @throws IOException
+		 */
+		ResourcesHelper.Output open (String type, String extension) throws IOException;
+	}
+
+	/**
+	 * Загруженные данные: массив или файл, в который они записаны
+	 */
+	static final class Result {
+
+		final String type;
+
+		final String extension;
+
+		final byte[] data;
+
+		final Path path;
+
+		final long size;
+
+		Result (String type, String extension, byte[] data) {
+			this.type = type;
+			this.extension = extension;
+			this.data = data;
+			this.path = null;
+			this.size = data.length;
+		}
+
+		Result (String type, String extension, Path path, long size) {
+			this.type = type;
+			this.extension = extension;
+			this.data = null;
+			this.path = path;
+			this.size = size;
+		}
+	}
+}
@@ -18,11 +18,26 @@ package com.artglorin.web.utils;
 import org.apache.commons.io.FileUtils;
 
 import javax.servlet.ServletContext;
+import java.io.Closeable;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Класс для работы со статическими ресурсами, которые хранятся на сервере.
@@ -33,10 +48,46 @@ import java.util.Arrays;
  */
 public class ResourcesHelper {
 
+	/**
+	 * Размер буфера при копировании данных из потоков и каналов
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Максимальное количество папок в кеше, при превышении кеш очищается
+	 */
+	private static final int MAX_KNOWN_DIRECTORIES = 4096;
+
+	/**
+	 * Количество уровней вложенных папок в хранилище по содержимому
+	 */
+	private static final int SHARD_LEVELS = 2;
+
+	/**
+	 * Количество символов хеша в имени папки одного уровня
+	 */
+	private static final int SHARD_WIDTH = 2;
+
 	private String pathToResources;
 
 	private String realPath;
 
+	private boolean atomicWrites;
+
+	private boolean syncWrites;
+
+	/**
+	 * Папки, которые уже были созданы или проверены. Запись в них не требует обращения к файловой системе для
+	 * создания папок.
+	 */
+	private final Set<Path> knownDirectories = ConcurrentHashMap.newKeySet();
+
+	private final LongAdder avoidedDirectoryChecks = new LongAdder();
+
+	private String contentDirectory = "content";
+
+	private final LongAdder deduplicatedContent = new LongAdder();
+
 	/**
 	 * Единственный  конструктор аргументы которого необходимы для работы класса
 	 *
@@ -61,7 +112,12 @@ public class ResourcesHelper {
 	 * @throws IOException
 	 */
 	public void deleteResourcesDirectory (String... path) throws IOException {
-		FileUtils.deleteDirectory(this.createRealPath(path).toFile());
+		Path directory = this.createRealPath(path);
+		try {
+			FileUtils.deleteDirectory(directory.toFile());
+		} finally {
+			knownDirectories.removeIf(known -> known.startsWith(directory));
+		}
 	}
 
 	/**
@@ -70,7 +126,7 @@ public class ResourcesHelper {
 	 * @param path путь который нужно создать
 	 * @return итоговый путь
 	 */
-	private Path createRealPath (String... path) {
+	Path createRealPath (String... path) {
 		return Paths.get(realPath, path);
 	}
 
@@ -84,6 +140,47 @@ public class ResourcesHelper {
 		return pathToResources;
 	}
 
+	/**
+	 * <p>Включает атомарную запись файлов. Данные пишутся во временный файл в той же папке, который после завершения
+	 * записи переименовывается в итоговый одной операцией. Читатели видят либо прежнее содержимое файла, либо новое
+	 * целиком, но никогда не видят частично записанный файл, в том числе после сбоя процесса.</p>
+	 * <p>Если файловая система не поддерживает атомарное переименование, файл заменяется обычным переименованием.</p>
+	 *
+	 * @param atomicWrites true если файлы нужно записывать атомарно. По умолчанию false.
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 * @see #setSyncWrites(boolean)
+	 */
+	public ResourcesHelper setAtomicWrites (boolean atomicWrites) {
+		this.atomicWrites = atomicWrites;
+		return this;
+	}
+
+	/**
+	 * @return true если файлы записываются атомарно
+	 */
+	public boolean isAtomicWrites () {
+		return atomicWrites;
+	}
+
+	/**
+	 * Включает сброс данных на диск перед завершением записи. Вместе с {@link #setAtomicWrites(boolean)} гарантирует,
+	 * что после сбоя питания файл будет содержать либо прежние, либо новые данные. Замедляет запись.
+	 *
+	 * @param syncWrites true если данные нужно сбрасывать на диск. По умолчанию false.
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	public ResourcesHelper setSyncWrites (boolean syncWrites) {
+		this.syncWrites = syncWrites;
+		return this;
+	}
+
+	/**
+	 * @return true если данные сбрасываются на диск перед завершением записи
+	 */
+	public boolean isSyncWrites () {
+		return syncWrites;
+	}
+
 	/**
 	 * Записывает данные из массива байтов в файл указанный во втором аргументе.
 	 * Данные будут перезаписывать данные
@@ -95,27 +192,340 @@ public class ResourcesHelper {
 	 *             Если передавать массив ["data","file.txt"] или одну строку "/data/file.txt", данные также будут
 	 *             записанный в файл по пути "/pathToResources/data/file.txt"
 	 * @throws IOException
+	 * @see #setAtomicWrites(boolean)
 	 */
 	public void saveData (byte[] data, String... path) throws IOException {
-		if (path.length == 0) {
-			throw new IOException("Path cannot be null");
+		saveData(ByteBuffer.wrap(data), path);
+	}
+
+	/**
+	 * Записывает в файл данные буфера от его текущей позиции до предела. Прямой буфер записывается без копирования
+	 * в память кучи.
+	 *
+	 * @param data буфер с данными. После записи его позиция будет равна пределу.
+	 * @param path путь до файла, так же как в {@link #saveData(byte[], String...)}
+	 * @return количество записанных байт
+	 * @throws IOException
+	 */
+	public long saveData (ByteBuffer data, String... path) throws IOException {
+		try (Output output = openOutput(path)) {
+			return write(data, output);
 		}
+	}
+
+	/**
+	 * <p>Записывает в файл все данные из канала до его конца, не держа их целиком в памяти. Если канал является
+	 * {@link FileChannel} обычного файла, данные копируются средствами операционной системы через
+	 * {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}, иначе (в том числе для pipe
+	 * и FIFO) через буфер постоянного размера.</p>
+	 * <p>Канал должен быть в блокирующем режиме. Канал не закрывается.</p>
+	 *
+	 * @param data канал с данными
+	 * @param path путь до файла, так же как в {@link #saveData(byte[], String...)}
+	 * @return количество записанных байт
+	 * @throws IOException
+	 */
+	public long saveData (ReadableByteChannel data, String... path) throws IOException {
+		try (Output output = openOutput(path)) {
+			FileChannel channel = output.getChannel();
+			long written = 0;
+			if (data instanceof FileChannel && isSeekable((FileChannel) data)) {
+				FileChannel source = (FileChannel) data;
+				long count;
+				while (source.position() < source.size()) {
+					count = channel.transferFrom(source, written, source.size() - source.position());
+					if (count == 0) {
+						break;
+					}
+					written += count;
+				}
+				// transferFrom не сдвигает позицию файла, а размер источника может быть неизвестен заранее (например,
+				// файлы в /proc), поэтому остаток дочитывается через буфер
+				channel.position(written);
+			}
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			while (data.read(buffer) >= 0) {
+				// Вызов через Buffer: ByteBuffer.flip() появился в JDK 9, а библиотека должна работать в JDK 8
+				((Buffer) buffer).flip();
+				while (buffer.hasRemaining()) {
+					written += channel.write(buffer);
+				}
+				((Buffer) buffer).clear();
+			}
+			output.commit();
+			return written;
+		}
+	}
+
+	/**
+	 * Записывает в файл все данные из потока до его конца, не держа их целиком в памяти. Данные из
+	 * {@link FileInputStream} обычного файла копируются средствами операционной системы. Поток не закрывается.
+	 *
+	 * @param data поток с данными
+	 * @param path путь до файла, так же как в {@link #saveData(byte[], String...)}
+	 * @return количество записанных байт
+	 * @throws IOException
+	 * @see #saveData(ReadableByteChannel, String...)
+	 */
+	public long saveData (InputStream data, String... path) throws IOException {
+		if (data instanceof FileInputStream && isSeekable(((FileInputStream) data).getChannel())) {
+			return saveData(((FileInputStream) data).getChannel(), path);
+		}
+		try (Output output = openOutput(path)) {
+			FileChannel channel = output.getChannel();
+			byte[] chunk = new byte[BUFFER_SIZE];
+			ByteBuffer buffer;
+			long written = 0;
+			int count;
+			while ((count = data.read(chunk)) >= 0) {
+				buffer = ByteBuffer.wrap(chunk, 0, count);
+				while (buffer.hasRemaining()) {
+					written += channel.write(buffer);
+				}
+			}
+			output.commit();
+			return written;
+		}
+	}
+
+	/**
+	 * Проверяет, что у канала есть позиция и размер. Для pipe, FIFO и терминалов (например, /dev/stdin) эти
+	 * операции завершаются ошибкой "Illegal seek", и данные из них можно только читать последовательно.
+	 */
+	private static boolean isSeekable (FileChannel channel) {
+		try {
+			channel.size();
+			channel.position();
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Указывает папку хранилища по содержимому
+	 *
+	 * @param contentDirectory путь от папки ресурсов до хранилища, не может быть null. По умолчанию "content".
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 * @see #saveContent(byte[], String)
+	 */
+	public ResourcesHelper setContentDirectory (String contentDirectory) {
+		if (contentDirectory == null) {
+			throw new IllegalArgumentException("Required argument contentDirectory is null");
+		}
+		this.contentDirectory = contentDirectory;
+		return this;
+	}
+
+	/**
+	 * @return путь от папки ресурсов до хранилища по содержимому
+	 */
+	public String getContentDirectory () {
+		return contentDirectory;
+	}
+
+	/**
+	 * <p>Сохраняет данные в хранилище по содержимому. Имя файла - SHA-256 от данных, а сам файл раскладывается по
+	 * вложенным папкам по первым символам хеша, например "content/ab/cd/abcdef...0123.png". Так в одной папке не
+	 * накапливаются сотни тысяч файлов.</p>
+	 * <p>Одинаковые данные сохраняются только один раз: если файл с таким хешем уже есть, запись не выполняется.
+	 * Файл всегда записывается атомарно, поэтому читатели не увидят его частично записанным.</p>
+	 *
+	 * @param data      данные, которые нужно сохранить
+	 * @param extension расширение файла без точки, может быть null
+	 * @return путь до файла от папки ресурсов с разделителем "/". Для одних и тех же данных и расширения путь всегда
+	 * одинаковый. Его можно передавать в остальные методы, например в {@link #openOutput(String...)}.
+	 * @throws IOException
+	 */
+	public String saveContent (byte[] data, String extension) throws IOException {
+		String[] path = contentPath(Digests.toHex(Digests.sha256().digest(data)), extension);
 		Path file = createRealPath(path);
-		String[] filePath = null;
-		if (file.toFile().exists()) {
-			FileUtils.writeByteArrayToFile(file.toFile(), data);
+		if (Files.exists(file)) {
+			deduplicatedContent.increment();
 		} else {
-			if (path.length > 1) {
-				if (path[path.length - 1].startsWith(".")) {
-					filePath = Arrays.copyOf(path, path.length - 2);
+			ensureDirectory(file.getParent());
+			try (Output output = openOutput(file, true)) {
+				write(ByteBuffer.wrap(data), output);
+			}
+		}
+		return String.join("/", path);
+	}
+
+	/**
+	 * Сохраняет данные из потока в хранилище по содержимому, не держа их целиком в памяти. Хеш вычисляется по мере
+	 * записи во временный файл, который затем переименовывается в итоговый или удаляется, если такие данные уже
+	 * сохранены. Поток не закрывается.
+	 *
+	 * @param data      поток с данными
+	 * @param extension расширение файла без точки, может быть null
+	 * @return путь до файла от папки ресурсов
+	 * @throws IOException
+	 * @see #saveContent(byte[], String)
+	 */
+	public String saveContent (InputStream data, String extension) throws IOException {
+		Path directory = createRealPath(contentDirectory);
+		ensureDirectory(directory);
+		Path temp = temporary(directory, "content");
+		MessageDigest digest = Digests.sha256();
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+				byte[] chunk = new byte[BUFFER_SIZE];
+				ByteBuffer buffer;
+				int count;
+				while ((count = data.read(chunk)) >= 0) {
+					digest.update(chunk, 0, count);
+					buffer = ByteBuffer.wrap(chunk, 0, count);
+					while (buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+				}
+				if (syncWrites) {
+					channel.force(true);
+				}
+			}
+			String[] path = contentPath(Digests.toHex(digest.digest()), extension);
+			Path file = createRealPath(path);
+			if (Files.exists(file)) {
+				deduplicatedContent.increment();
+			} else {
+				ensureDirectory(file.getParent());
+				try {
+					replace(temp, file, syncWrites);
+				} catch (NoSuchFileException e) {
+					// Папку удалили в обход deleteResourcesDirectory
+					knownDirectories.remove(file.getParent());
+					ensureDirectory(file.getParent());
+					replace(temp, file, syncWrites);
 				}
 			}
+			return String.join("/", path);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * @return количество вызовов saveContent, для которых такие же данные уже были сохранены
+	 */
+	public long getDeduplicatedContentCount () {
+		return deduplicatedContent.sum();
+	}
+
+	/**
+	 * @return путь в хранилище по содержимому: папка хранилища, папки по первым символам хеша и имя файла
+	 */
+	private String[] contentPath (String hash, String extension) {
+		String[] path = new String[SHARD_LEVELS + 2];
+		path[0] = contentDirectory;
+		for (int i = 0; i < SHARD_LEVELS; i++) {
+			path[i + 1] = hash.substring(i * SHARD_WIDTH, (i + 1) * SHARD_WIDTH);
+		}
+		path[path.length - 1] = extension == null || extension.isEmpty() ? hash : hash + "." + extension;
+		return path;
+	}
+
+	/**
+	 * <p>Открывает файл ресурса для записи, создав при необходимости все папки на пути к нему. Данные пишутся через
+	 * {@link Output#getChannel()}, что позволяет сохранять данные частями, не держа их целиком в памяти.</p>
+	 * <p>Запись нужно завершить вызовом {@link Output#commit()}. Если закрыть {@link Output} без завершения, частично
+	 * записанный файл будет удален.</p>
+	 * <p>При атомарной записи данные пишутся во временный файл, а итоговый файл заменяется только в
+	 * {@link Output#commit()}.</p>
+	 *
+	 * @param path путь до файла, так же как в {@link #saveData(byte[], String...)}
+	 * @return открытый для записи файл
+	 * @throws IOException
+	 */
+	public Output openOutput (String... path) throws IOException {
+		if (path.length == 0) {
+			throw new IOException("Path cannot be null");
+		}
+		Path file = createRealPath(path);
+		ensureDirectory(file.getParent());
+		return openOutput(file);
+	}
+
+	/**
+	 * Открывает файл для записи в уже существующей папке. Если папку удалили в обход
+	 * {@link #deleteResourcesDirectory(String...)}, она создается заново.
+	 *
+	 * @param file реальный путь до файла
+	 * @return открытый для записи файл
+	 * @throws IOException
+	 * @see #openOutput(String...)
+	 */
+	Output openOutput (Path file) throws IOException {
+		return openOutput(file, atomicWrites);
+	}
+
+	private Output openOutput (Path file, boolean atomic) throws IOException {
+		try {
+			return open(file, atomic);
+		} catch (NoSuchFileException e) {
+			knownDirectories.remove(file.getParent());
+			ensureDirectory(file.getParent());
+			return open(file, atomic);
+		}
+	}
+
+	private Output open (Path file, boolean atomic) throws IOException {
+		if (!atomic) {
+			return new Output(file, null, FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING), syncWrites);
+		}
+		Path temp = temporary(file.getParent(), file.getFileName().toString());
+		return new Output(file, temp, FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), syncWrites);
+	}
+
+	/**
+	 * Временный файл создается в той же папке, что и итоговый, чтобы переименование не выходило за пределы файловой
+	 * системы
+	 *
+	 * @return путь до скрытого временного файла с уникальным именем
+	 */
+	private static Path temporary (Path directory, String name) {
+		return directory.resolve("." + name + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+	}
+
+	/**
+	 * Атомарно заменяет итоговый файл временным. Если файловая система не поддерживает атомарное переименование,
+	 * файл заменяется обычным переименованием.
+	 */
+	private static void replace (Path temp, Path file, boolean sync) throws IOException {
+		try {
+			Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
 		}
-		if (filePath == null) {
-			filePath = Arrays.copyOf(path, path.length - 1);
+		if (sync) {
+			syncDirectory(file.getParent());
 		}
-		createResourcesDirectory(filePath);
-		FileUtils.writeByteArrayToFile(file.toFile(), data);
+	}
+
+	/**
+	 * Сбрасывает на диск запись папки, чтобы переименование файла пережило сбой питания. Открыть папку как файл
+	 * можно не во всех операционных системах, в остальных переименование сохраняется самой файловой системой.
+	 */
+	private static void syncDirectory (Path directory) {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// Например в Windows папку нельзя открыть для чтения
+		}
+	}
+
+	/**
+	 * Записывает данные буфера и завершает запись
+	 *
+	 * @return количество записанных байт
+	 */
+	static long write (ByteBuffer data, Output output) throws IOException {
+		long written = 0;
+		while (data.hasRemaining()) {
+			written += output.getChannel().write(data);
+		}
+		output.commit();
+		return written;
 	}
 
 	/**
@@ -125,10 +535,115 @@ public class ResourcesHelper {
 	 * @throws IOException
 	 */
 	public void createResourcesDirectory (String... path) throws IOException {
-		Files.createDirectories(this.createRealPath(path));
+		Path directory = this.createRealPath(path);
+		Files.createDirectories(directory);
+		remember(directory);
 	}
-}
 
+	/**
+	 * Создает папку, если о ней еще неизвестно, что она существует
+	 *
+	 * @param directory реальный путь до папки
+	 * @return true если пришлось обратиться к файловой системе
+	 * @throws IOException
+	 */
+	boolean ensureDirectory (Path directory) throws IOException {
+		if (knownDirectories.contains(directory)) {
+			avoidedDirectoryChecks.increment();
+			return false;
+		}
+		Files.createDirectories(directory);
+		remember(directory);
+		return true;
+	}
+
+	private void remember (Path directory) {
+		if (knownDirectories.size() >= MAX_KNOWN_DIRECTORIES) {
+			knownDirectories.clear();
+		}
+		knownDirectories.add(directory);
+	}
+
+	/**
+	 * Возвращает количество записей, для которых не пришлось создавать или проверять папку, потому что она уже была
+	 * создана этим экземпляром. Каждая такая запись экономит обращения к файловой системе, которые выполняет
+	 * {@link Files#createDirectories(Path, java.nio.file.attribute.FileAttribute[])}.
+	 *
+	 * @return количество пропущенных проверок папок
+	 */
+	public long getAvoidedDirectoryChecks () {
+		return avoidedDirectoryChecks.sum();
+	}
+
+	/**
+	 * Файл ресурса, открытый для записи методом {@link #openOutput(String...)}
+	 */
+	public static class Output implements Closeable {
+
+		private final Path path;
+
+		/**
+		 * Временный файл, в который пишутся данные при атомарной записи, иначе null
+		 */
+		private final Path temp;
+
+		private final FileChannel channel;
 
+		private final boolean sync;
 
+		private boolean committed;
 
+		private Output (Path path, Path temp, FileChannel channel, boolean sync) {
+			this.path = path;
+			this.temp = temp;
+			this.channel = channel;
+			this.sync = sync;
+		}
+
+		/**
+		 * @return канал для записи данных
+		 */
+		public FileChannel getChannel () {
+			return channel;
+		}
+
+		/**
+		 * @return реальный путь до файла в файловой системе
+		 */
+		public Path getPath () {
+			return path;
+		}
+
+		/**
+		 * Завершает запись и закрывает файл. При атомарной записи заменяет итоговый файл записанным.
+		 *
+		 * @return размер записанного файла в байтах
+		 * @throws IOException
+		 */
+		public long commit () throws IOException {
+			if (sync) {
+				channel.force(true);
+			}
+			long size = channel.size();
+			channel.close();
+			if (temp != null) {
+				replace(temp, path, sync);
+			}
+			committed = true;
+			return size;
+		}
+
+		/**
+		 * Закрывает файл. Если запись не была завершена, файл удаляется.
+		 *
+		 * @throws IOException
+		 */
+		@Override
+		public void close () throws IOException {
+			if (!committed) {
+				channel.close();
+				Files.deleteIfExists(temp != null ? temp : path);
+			}
+		}
+	}
+}
@@ -16,18 +16,26 @@
 package com.artglorin.web.utils;
 
 import com.artglorin.web.utils.exceptions.*;
-import org.apache.commons.io.IOUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
-import java.util.ArrayList;
-import java.util.Base64;
-import java.util.List;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Класс для того, чтобы извлекать данные в виде массива байт из xml докумнента.
@@ -39,20 +47,128 @@ import java.util.List;
 public class XmlByteExtractor {
 
 
+	/**
+	 * Теги и аттрибуты с источником данных, из которых извлекаются данные методом {@link #extractAll()}
+	 */
+	public static final Map<String, String> DEFAULT_SOURCES;
+
+	static {
+		Map<String, String> sources = new LinkedHashMap<>();
+		sources.put("audio", "src");
+		sources.put("img", "src");
+		sources.put("video", "src");
+		DEFAULT_SOURCES = Collections.unmodifiableMap(sources);
+	}
+
+	/**
+	 * Максимальное количество одновременно загружаемых источников по умолчанию
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT_FETCHES = 8;
+
+	/**
+	 * Максимальное количество одновременно загружаемых источников с одного хоста по умолчанию
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT_FETCHES_PER_HOST = 4;
+
 	private final Document document;
 
 	/**
-	 * Единственный конструктор, которому в качестве аргумента передается документ из которого нужно извлекать данные.
+	 * Файл документа, который читается потоковым парсером при каждом извлечении
+	 */
+	private final Path path;
+
+	/**
+	 * Поток документа, который можно прочитать только один раз
+	 */
+	private InputStream inputStream;
+
+	/**
+	 * Поток символов документа, который можно прочитать только один раз
+	 */
+	private Reader reader;
+
+	/**
+	 * Исполнитель для параллельной загрузки источников http и https. Если null, источники загружаются по очереди.
+	 */
+	private Executor fetchExecutor;
+
+	private int maxConcurrentFetches = DEFAULT_MAX_CONCURRENT_FETCHES;
+
+	private int maxConcurrentFetchesPerHost = DEFAULT_MAX_CONCURRENT_FETCHES_PER_HOST;
+
+	private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+	private FetchPolicy fetchPolicy = new FetchPolicy();
+
+	private MediaCache mediaCache;
+
+	private DataUriDeduplicator deduplicator;
+
+	/**
+	 * Размер буфера при записи встроенных данных в файл
+	 */
+	private static final int STORE_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Конструктор, которому в качестве аргумента передается документ из которого нужно извлекать данные.
 	 * Связь с документом остается. Данные не дублируются.
 	 *
 	 * @param document Документ из которого нужно извлечь данные
 	 */
 	public XmlByteExtractor (Document document) {
 		this.document = document;
+		this.path = null;
 	}
 
 	/**
-	 * <p>Поочереди извлекает все изображения, аудио и видео из документа.
+	 * <p>Конструктор для извлечения данных из файла без построения DOM. Файл читается потоковым парсером при каждом
+	 * извлечении, поэтому в памяти находится только значение одного аттрибута, а не весь документ.</p>
+	 * <p>У описателей, полученных таким образом, {@link Description#getNode()} возвращает null.</p>
+	 *
+	 * @param path путь до xml файла
+	 */
+	public XmlByteExtractor (Path path) {
+		if (path == null) {
+			throw new IllegalArgumentException("Required argument path is null");
+		}
+		this.document = null;
+		this.path = path;
+	}
+
+	/**
+	 * <p>Конструктор для извлечения данных из потока без построения DOM. Поток можно прочитать только один раз, поэтому
+	 * извлечь данные можно только одним вызовом, например {@link #extractAll()}. Поток не закрывается.</p>
+	 * <p>У описателей, полученных таким образом, {@link Description#getNode()} возвращает null.</p>
+	 *
+	 * @param inputStream поток с xml документом
+	 */
+	public XmlByteExtractor (InputStream inputStream) {
+		if (inputStream == null) {
+			throw new IllegalArgumentException("Required argument inputStream is null");
+		}
+		this.document = null;
+		this.path = null;
+		this.inputStream = inputStream;
+	}
+
+	/**
+	 * <p>Конструктор для извлечения данных из потока символов без построения DOM. Поток можно прочитать только один
+	 * раз, поэтому извлечь данные можно только одним вызовом, например {@link #extractAll()}. Поток не закрывается.</p>
+	 * <p>У описателей, полученных таким образом, {@link Description#getNode()} возвращает null.</p>
+	 *
+	 * @param reader поток символов с xml документом
+	 */
+	public XmlByteExtractor (Reader reader) {
+		if (reader == null) {
+			throw new IllegalArgumentException("Required argument reader is null");
+		}
+		this.document = null;
+		this.path = null;
+		this.reader = reader;
+	}
+
+	/**
+	 * <p>Извлекает все изображения, аудио и видео из документа за один обход в порядке следования в документе.
 	 * данные должны находится в тегах &lt;img&gt; &lt;audio&gt; &lt;video&gt;
 	 * , а источник данных в аттрибуте "src".</p>
 	 * <p>На данный момент поддерживается источники в виде</p>
@@ -66,12 +182,243 @@ public class XmlByteExtractor {
 	 */
 	public List<Description> extractAll () throws ExtractionException {
 		List<Description> result = new ArrayList<>();
-		result.addAll(extractAudio());
-		result.addAll(extractImage());
-		result.addAll(extractVideo());
+		extractAll(result::add);
+		return result;
+	}
+
+	/**
+	 * <p>Извлекает все изображения, аудио и видео из документа за один обход и передает каждый описатель в обработчик
+	 * сразу после извлечения.</p>
+	 * <p>В отличие от {@link #extractAll()} результаты не накапливаются, поэтому в памяти одновременно находятся
+	 * данные только одного элемента документа.</p>
+	 *
+	 * @param handler обработчик, который получает описатели в порядке извлечения
+	 * @throws ExtractionException более подробные данные об ошибках можно посмотреть в {@link com.artglorin.web.utils.exceptions}
+	 * @see #extractAll()
+	 */
+	public void extractAll (DescriptionHandler handler) throws ExtractionException {
+		extract(DEFAULT_SOURCES, handler);
+	}
+
+	/**
+	 * <p>Извлекает данные из произвольного набора тегов за один обход документа.</p>
+	 *
+	 * @param sources соответствие имени тега и аттрибута, в котором находится источник данных.
+	 *                Например {"img" : "src", "object" : "data"}
+	 * @return список с описателями извлеченных данных в порядке следования элементов в документе
+	 * @throws ExtractionException более подробные данные об ошибках можно посмотреть в {@link com.artglorin.web.utils.exceptions}
+	 * @see #extract(Map, DescriptionHandler)
+	 */
+	public List<Description> extract (Map<String, String> sources) throws ExtractionException {
+		List<Description> result = new ArrayList<>();
+		extract(sources, result::add);
 		return result;
 	}
 
+	/**
+	 * <p>Извлекает данные из произвольного набора тегов за один обход документа и передает каждый описатель в
+	 * обработчик сразу после извлечения.</p>
+	 *
+	 * @param sources соответствие имени тега и аттрибута, в котором находится источник данных
+	 * @param handler обработчик, который получает описатели в порядке следования элементов в документе
+	 * @throws ExtractionException более подробные данные об ошибках можно посмотреть в {@link com.artglorin.web.utils.exceptions}
+	 */
+	public void extract (Map<String, String> sources, DescriptionHandler handler) throws ExtractionException {
+		extract(new Extraction(handler, null, null), sources);
+	}
+
+	/**
+	 * <p>Извлекает все изображения, аудио и видео из документа и записывает данные сразу в файлы хранилища, не собирая
+	 * их в массивы. Встроенные данные декодируются в файл частями, а тело ответа http и https переносится в файл через
+	 * {@link java.nio.channels.FileChannel#transferFrom}.</p>
+	 * <p>У полученных описателей {@link Description#getData()} возвращает null, а путь до файла и его размер
+	 * доступны через {@link Description#getPath()} и {@link Description#getSize()}.</p>
+	 *
+	 * @param storage хранилище, в которое записываются данные
+	 * @param naming  способ получения пути до файла для каждого элемента
+	 * @return список с описателями сохраненных данных в порядке следования элементов в документе
+	 * @throws ExtractionException более подробные данные об ошибках можно посмотреть в {@link com.artglorin.web.utils.exceptions}
+	 */
+	public List<Description> extractAll (ResourcesHelper storage, StorageNaming naming) throws ExtractionException {
+		List<Description> result = new ArrayList<>();
+		extract(DEFAULT_SOURCES, storage, naming, result::add);
+		return result;
+	}
+
+	/**
+	 * Извлекает данные из произвольного набора тегов и записывает их сразу в файлы хранилища
+	 *
+	 * @param sources соответствие имени тега и аттрибута, в котором находится источник данных
+	 * @param storage хранилище, в которое записываются данные
+	 * @param naming  способ получения пути до файла для каждого элемента
+	 * @param handler обработчик, который получает описатели в порядке следования элементов в документе
+	 * @throws ExtractionException более подробные данные об ошибках можно посмотреть в {@link com.artglorin.web.utils.exceptions}
+	 * @see #extractAll(ResourcesHelper, StorageNaming)
+	 */
+	public void extract (Map<String, String> sources, ResourcesHelper storage, StorageNaming naming, DescriptionHandler handler) throws ExtractionException {
+		if (storage == null) {
+			throw new IllegalArgumentException("Required argument storage is null");
+		}
+		if (naming == null) {
+			throw new IllegalArgumentException("Required argument naming is null");
+		}
+		extract(new Extraction(handler, storage, naming), sources);
+	}
+
+	private void extract (Extraction extraction, Map<String, String> sources) throws ExtractionException {
+		try {
+			if (document != null) {
+				traverse(sources, extraction);
+			} else {
+				stream(sources, extraction);
+			}
+			extraction.finish();
+		} finally {
+			extraction.cancel();
+			if (deduplicator != null && extraction.storage != null) {
+				deduplicator.release(extraction);
+			}
+		}
+	}
+
+	/**
+	 * Обходит DOM документа
+	 */
+	private void traverse (Map<String, String> sources, Extraction extraction) throws ExtractionException {
+		Node node = document.getFirstChild();
+		Node next;
+		String valueAttr;
+		Node attribute;
+		while (node != null) {
+			if (node.getNodeType() == Node.ELEMENT_NODE) {
+				valueAttr = sources.get(node.getNodeName());
+				if (valueAttr != null) {
+					attribute = node.getAttributes().getNamedItem(valueAttr);
+					if (attribute == null) {
+						throw new ExtractionException("Element <" + node.getNodeName() + "> has no attribute " + valueAttr);
+					}
+					extraction.add(node, attribute.getNodeValue());
+				}
+			}
+			// Обходим дерево в глубину без рекурсии, чтобы не упираться в размер стека на глубоких документах
+			next = node.getFirstChild();
+			while (next == null && node != null) {
+				next = node.getNextSibling();
+				if (next == null) {
+					node = node.getParentNode();
+				}
+			}
+			node = next;
+		}
+	}
+
+	/**
+	 * Читает документ потоковым парсером, не строя DOM
+	 */
+	private void stream (Map<String, String> sources, Extraction extraction) throws ExtractionException {
+		InputStream in;
+		Reader chars;
+		synchronized (this) {
+			in = inputStream;
+			chars = reader;
+			inputStream = null;
+			reader = null;
+		}
+		if (path == null && in == null && chars == null) {
+			throw new ExtractionException("Document stream has already been read");
+		}
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		// Внешние сущности и DTD не нужны для поиска тегов и опасны для документов из непроверенных источников
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		// Без DTD именованные сущности XHTML (&nbsp;, &copy; ...) не объявлены. Не заменяем их, а получаем
+		// событиями ENTITY_REFERENCE, которые пропускаются вместе с остальным текстом
+		factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+		try {
+			if (path != null) {
+				in = Files.newInputStream(path);
+			}
+			XMLStreamReader xml = chars != null ? factory.createXMLStreamReader(chars) : factory.createXMLStreamReader(in);
+			try {
+				String name, valueAttr, value;
+				while (xml.hasNext()) {
+					if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+						continue;
+					}
+					name = xml.getPrefix() == null || xml.getPrefix().isEmpty() ? xml.getLocalName() : xml.getPrefix() + ":" + xml.getLocalName();
+					valueAttr = sources.get(name);
+					if (valueAttr != null) {
+						value = attributeValue(xml, valueAttr);
+						if (value == null) {
+							throw new ExtractionException("Element <" + name + "> has no attribute " + valueAttr);
+						}
+						extraction.add(null, value);
+					}
+				}
+			} finally {
+				xml.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new ExtractionException("Cannot read document: " + e.getMessage());
+		} catch (IOException e) {
+			throw new ExtractionException("Cannot open document: " + path);
+		} finally {
+			if (path != null && in != null) {
+				try {
+					in.close();
+				} catch (IOException ignored) {
+					// Данные уже прочитаны
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ищет аттрибут по полному имени, так же как {@link org.w3c.dom.NamedNodeMap#getNamedItem(String)}
+	 */
+	private static String attributeValue (XMLStreamReader xml, String name) {
+		String prefix;
+		for (int i = 0; i < xml.getAttributeCount(); i++) {
+			prefix = xml.getAttributePrefix(i);
+			if (prefix == null || prefix.isEmpty() ? name.equals(xml.getAttributeLocalName(i)) : name.equals(prefix + ":" + xml.getAttributeLocalName(i))) {
+				return xml.getAttributeValue(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * <p>Включает параллельную загрузку источников http и https через указанный исполнитель.</p>
+	 * <p>Порядок результатов и исключения остаются такими же, как при последовательной загрузке: описатели передаются
+	 * в порядке следования элементов в документе, а при ошибке выбрасывается исключение первого по порядку
+	 * неудачного элемента, остальные загрузки отменяются.</p>
+	 *
+	 * @param executor           исполнитель, в котором выполняются загрузки. Если null, загрузка будет последовательной
+	 * @param maxInFlight        максимальное количество элементов, которые загружаются или ожидают передачи обработчику
+	 * @param maxInFlightPerHost максимальное количество одновременных загрузок с одного хоста
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	public XmlByteExtractor setConcurrentFetch (Executor executor, int maxInFlight, int maxInFlightPerHost) {
+		this.fetchExecutor = executor;
+		this.maxConcurrentFetches = maxInFlight > 0 ? maxInFlight : 1;
+		this.maxConcurrentFetchesPerHost = maxInFlightPerHost > 0 ? maxInFlightPerHost : 1;
+		hostPermits.clear();
+		return this;
+	}
+
+	/**
+	 * Включает параллельную загрузку источников http и https через общий исполнитель библиотеки.
+	 * На JDK 21 и выше загрузки выполняются в виртуальных потоках.
+	 *
+	 * @param maxInFlight        максимальное количество элементов, которые загружаются или ожидают передачи обработчику
+	 * @param maxInFlightPerHost максимальное количество одновременных загрузок с одного хоста
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 * @see #setConcurrentFetch(Executor, int, int)
+	 */
+	public XmlByteExtractor setConcurrentFetch (int maxInFlight, int maxInFlightPerHost) {
+		return setConcurrentFetch(FetchExecutorHolder.EXECUTOR, maxInFlight, maxInFlightPerHost);
+	}
+
 	/**
 	 * <p>Извлекает аудио из документа.
 	 * данные должны находится в теге &lt;audio&gt;
@@ -86,7 +433,20 @@ public class XmlByteExtractor {
 	 * @throws ExtractionException более подробные данные об ошибках можно посмотреть в {@link com.artglorin.web.utils.exceptions}
 	 */
 	public List<Description> extractAudio () throws ExtractionException {
-		return this.extract("audio", "src");
+		List<Description> result = new ArrayList<>();
+		extractAudio(result::add);
+		return result;
+	}
+
+	/**
+	 * Извлекает данные из тегов &lt;audio&gt; и передает каждый описатель в обработчик сразу после извлечения.
+	 *
+	 * @param handler обработчик, который получает описатели в порядке извлечения
+	 * @throws ExtractionException более подробные данные об ошибках можно посмотреть в {@link com.artglorin.web.utils.exceptions}
+	 * @see #extractAudio()
+	 */
+	public void extractAudio (DescriptionHandler handler) throws ExtractionException {
+		this.extract(Collections.singletonMap("audio", "src"), handler);
 	}
 
 	/**
@@ -103,7 +463,20 @@ public class XmlByteExtractor {
 	 * @throws ExtractionException более подробные данные об ошибках можно посмотреть в {@link com.artglorin.web.utils.exceptions}
 	 */
 	public List<Description> extractImage () throws ExtractionException {
-		return this.extract("img", "src");
+		List<Description> result = new ArrayList<>();
+		extractImage(result::add);
+		return result;
+	}
+
+	/**
+	 * Извлекает данные из тегов &lt;img&gt; и передает каждый описатель в обработчик сразу после извлечения.
+	 *
+	 * @param handler обработчик, который получает описатели в порядке извлечения
+	 * @throws ExtractionException более подробные данные об ошибках можно посмотреть в {@link com.artglorin.web.utils.exceptions}
+	 * @see #extractImage()
+	 */
+	public void extractImage (DescriptionHandler handler) throws ExtractionException {
+		this.extract(Collections.singletonMap("img", "src"), handler);
 	}
 
 	/**
@@ -120,81 +493,385 @@ public class XmlByteExtractor {
 	 * @throws ExtractionException более подробные данные об ошибках можно посмотреть в {@link com.artglorin.web.utils.exceptions}
 	 */
 	public List<Description> extractVideo () throws ExtractionException {
-		return this.extract("video", "src");
-	}
-
-	private List<Description> extract (String tagName, String valueAttr) throws ExtractionException {
-		NodeList tags = document.getElementsByTagName(tagName);
-		List<Description> result = new ArrayList<>(tags.getLength());
-		byte[] data;
-		String type, extension, value, decodeType;
-		Node node;
-		for (int i = 0; i < tags.getLength(); i++) {
-			node = tags.item(i);
-			value = node.getAttributes().getNamedItem(valueAttr).getNodeValue();
-			if (value.startsWith("data:")) {
-				try {
-					type = value.substring(value.indexOf(":") + 1, value.indexOf("/"));
-				} catch (Exception e) {
-					throw new InvalidTypeException(value);
-				}
-				try {
-					extension = value.substring(value.indexOf("/") + 1, value.indexOf(";"));
-				} catch (Exception e) {
-					throw new InvalidExtensionException(value);
-				}
-				try {
-					decodeType = value.substring(value.indexOf(";") + 1, value.indexOf(","));
-				} catch (Exception e) {
-					throw new InvalidDecodeTypeException(value);
-				}
-				if (decodeType.equals("base64")) {
-					try {
-						data = Base64.getDecoder().decode(value.substring(value.indexOf(",") + 1));
-					} catch (Exception e) {
-						throw new DecodeException(e.toString());
+		List<Description> result = new ArrayList<>();
+		extractVideo(result::add);
+		return result;
+	}
+
+	/**
+	 * Извлекает данные из тегов &lt;video&gt; и передает каждый описатель в обработчик сразу после извлечения.
+	 *
+	 * @param handler обработчик, который получает описатели в порядке извлечения
+	 * @throws ExtractionException более подробные данные об ошибках можно посмотреть в {@link com.artglorin.web.utils.exceptions}
+	 * @see #extractVideo()
+	 */
+	public void extractVideo (DescriptionHandler handler) throws ExtractionException {
+		this.extract(Collections.singletonMap("video", "src"), handler);
+	}
+
+	/**
+	 * Извлекает данные из одного элемента документа
+	 *
+	 * @param node       элемент документа
+	 * @param value      значение аттрибута, в котором находится источник данных
+	 * @param index      номер элемента в порядке документа
+	 * @param extraction текущее извлечение
+	 * @return описатель извлеченных данных
+	 * @throws ExtractionException более подробные данные об ошибках можно посмотреть в {@link com.artglorin.web.utils.exceptions}
+	 */
+	private Description describe (Node node, String value, int index, Extraction extraction) throws ExtractionException {
+		if (value.startsWith("data:")) {
+			DataUri dataUri = DataUri.parse(value);
+			Description description = new Description()
+					.setExtension(dataUri.getExtension())
+					.setNode(node)
+					.setType(dataUri.getType());
+			byte[] digest = deduplicator != null ? dataUri.digest() : null;
+			DataUriDeduplicator.Shared original = digest != null ? deduplicator.findEncoded(digest, extraction.scope()) : null;
+			if (original != null) {
+				return description.setData(original.data).setPath(original.path).setSize(original.size).setOriginal(original);
+			}
+			if (extraction.storage == null) {
+				description.setData(dataUri.decode());
+			} else {
+				store(dataUri, description, index, extraction);
+			}
+			if (deduplicator != null) {
+				original = deduplicator.register(digest, extraction.scope(), description);
+				if (original != null) {
+					// Уже записанный файл остается у описателя, общими становятся только данные в памяти
+					if (description.getPath() == null) {
+						description.setData(original.data);
 					}
-				} else {
-					throw new InvalidDecodeTypeException(decodeType);
+					description.setOriginal(original);
 				}
-				result.add(new Description()
-						.setData(data)
-						.setExtension(extension)
-						.setNode(node)
-						.setType(type));
-			} else if (value.startsWith("http:") || value.startsWith("https:")) {
-				URL url;
-				try {
-					url = new URL(value);
-				} catch (MalformedURLException e) {
-					e.printStackTrace();
-					throw new ExtractionException("Cannot create URL. Exception: " + e.toString());
-				}
-				URLConnection connection;
-				try {
-					connection = url.openConnection();
-				} catch (IOException e) {
-					throw new ExtractionException("Cannot open connection");
+			}
+			return description;
+		} else if (isRemote(value)) {
+			RemoteFetcher.Target target = extraction.storage == null ? null
+					: (type, extension) -> extraction.storage.openOutput(extraction.path(index, type, extension));
+			RemoteFetcher.Result fetched = RemoteFetcher.fetch(value, fetchPolicy, mediaCache, extraction.fetchedBytes, target);
+			return new Description()
+					.setData(fetched.data)
+					.setPath(fetched.path)
+					.setSize(fetched.size)
+					.setExtension(fetched.extension)
+					.setType(fetched.type)
+					.setNode(node);
+		} else {
+			throw new UnsupportedFormatException(value);
+		}
+	}
+
+	/**
+	 * Декодирует встроенные данные прямо в файл хранилища частями, не создавая массив под все данные
+	 */
+	private void store (DataUri dataUri, Description description, int index, Extraction extraction) throws ExtractionException {
+		String[] path = extraction.naming.path(index, dataUri.getType(), dataUri.getExtension());
+		try (ResourcesHelper.Output output = extraction.storage.openOutput(extraction.check(path))) {
+			OutputStream out = new BufferedOutputStream(Channels.newOutputStream(output.getChannel()), STORE_BUFFER_SIZE);
+			dataUri.decode(out);
+			out.flush();
+			description.setSize(output.commit()).setPath(output.getPath());
+		} catch (IOException e) {
+			throw new ExtractionException("Cannot save data to " + Arrays.toString(path) + ". Exception: " + e.toString());
+		}
+	}
+
+	/**
+	 * @return ограничения загрузки удаленных источников
+	 */
+	public FetchPolicy getFetchPolicy () {
+		return fetchPolicy;
+	}
+
+	/**
+	 * Устанавливает ограничения загрузки удаленных источников: таймауты и максимальные размеры данных
+	 *
+	 * @param fetchPolicy ограничения загрузки, не может быть null
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	public XmlByteExtractor setFetchPolicy (FetchPolicy fetchPolicy) {
+		if (fetchPolicy == null) {
+			throw new IllegalArgumentException("Required argument fetchPolicy is null");
+		}
+		this.fetchPolicy = fetchPolicy;
+		return this;
+	}
+
+	/**
+	 * @return кеш данных удаленных источников или null, если кеш не используется
+	 */
+	public MediaCache getMediaCache () {
+		return mediaCache;
+	}
+
+	/**
+	 * Устанавливает кеш данных удаленных источников. Один кеш можно разделять между несколькими извлекателями, чтобы
+	 * не загружать одни и те же источники при повторной обработке документов.
+	 *
+	 * @param mediaCache кеш или null, чтобы всегда загружать источники
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	public XmlByteExtractor setMediaCache (MediaCache mediaCache) {
+		this.mediaCache = mediaCache;
+		return this;
+	}
+
+	/**
+	 * @return механизм разделения одинаковых встроенных данных или null, если он не используется
+	 */
+	public DataUriDeduplicator getDeduplicator () {
+		return deduplicator;
+	}
+
+	/**
+	 * Включает разделение одинаковых встроенных данных: повторяющиеся данные декодируются один раз, а описатели
+	 * получают общий массив байт. Чтобы разделять данные между документами, передайте один экземпляр нескольким
+	 * извлекателям.
+	 *
+	 * @param deduplicator механизм разделения данных или null, чтобы декодировать каждый элемент отдельно
+	 * @return ссылку на себя для удобной настройки по цепочке
+	 */
+	public XmlByteExtractor setDeduplicator (DataUriDeduplicator deduplicator) {
+		this.deduplicator = deduplicator;
+		return this;
+	}
+
+	private static boolean isRemote (String value) {
+		return value.startsWith("http:") || value.startsWith("https:");
+	}
+
+	/**
+	 * Загружает удаленный источник, соблюдая ограничение на количество одновременных загрузок с одного хоста
+	 */
+	private Description fetch (Node node, String value, int index, Extraction extraction) throws ExtractionException, InterruptedException {
+		String host;
+		try {
+			host = new URL(value).getHost();
+		} catch (MalformedURLException e) {
+			// Ошибку адреса сообщит describe
+			return describe(node, value, index, extraction);
+		}
+		Semaphore permits = hostPermits.computeIfAbsent(host, key -> new Semaphore(maxConcurrentFetchesPerHost));
+		permits.acquire();
+		try {
+			return describe(node, value, index, extraction);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * <p>Одно извлечение данных из документа.</p>
+	 * <p>При последовательной загрузке каждый элемент сразу передается обработчику. При параллельной загрузке удаленные
+	 * источники запускаются заранее, а обработчику элементы передаются строго в порядке документа. Количество
+	 * ожидающих элементов ограничено, поэтому в памяти не накапливаются данные всего документа.</p>
+	 */
+	private class Extraction {
+
+		private final DescriptionHandler handler;
+
+		private final Deque<Pending> pending = new ArrayDeque<>();
+
+		/**
+		 * Сколько байт загружено из удаленных источников за это извлечение
+		 */
+		private final AtomicLong fetchedBytes = new AtomicLong();
+
+		/**
+		 * Хранилище, в которое записываются данные, null если данные возвращаются массивами
+		 */
+		private final ResourcesHelper storage;
+
+		/**
+		 * Реальный путь до хранилища, null если данные возвращаются массивами
+		 */
+		private final Path root;
+
+		private final StorageNaming naming;
+
+		/**
+		 * Номер следующего элемента в порядке документа
+		 */
+		private int index;
+
+		Extraction (DescriptionHandler handler, ResourcesHelper storage, StorageNaming naming) {
+			this.handler = handler;
+			this.storage = storage;
+			this.root = storage != null ? storage.createRealPath() : null;
+			this.naming = naming;
+		}
+
+		/**
+		 * @return в пределах чего можно разделять данные: файлы разделяются только внутри этого извлечения, а данные
+		 * в памяти - между всеми извлечениями
+		 */
+		Object scope () {
+			return storage != null ? this : null;
+		}
+
+		/**
+		 * @return путь до файла элемента в хранилище
+		 * @throws IOException если путь выходит за пределы хранилища
+		 */
+		String[] path (int index, String type, String extension) throws IOException {
+			return check(naming.path(index, type, extension));
+		}
+
+		/**
+		 * Проверяет, что путь не выходит за пределы хранилища, например из-за ".." в имени
+		 *
+		 * @return тот же путь
+		 * @throws IOException если путь выходит за пределы хранилища
+		 */
+		String[] check (String[] path) throws IOException {
+			if (!storage.createRealPath(path).normalize().startsWith(root.normalize())) {
+				throw new IOException("Path is outside of storage: " + Arrays.toString(path));
+			}
+			return path;
+		}
+
+		void add (Node node, String value) throws ExtractionException {
+			int index = this.index++;
+			if (fetchExecutor == null) {
+				handler.handle(describe(node, value, index, this));
+				return;
+			}
+			FutureTask<Description> task = null;
+			if (isRemote(value)) {
+				task = new FutureTask<>(() -> fetch(node, value, index, this));
+				fetchExecutor.execute(task);
+			}
+			pending.add(new Pending(node, value, index, task));
+			while (!pending.isEmpty() && pending.peek().isReady()) {
+				emit(pending.poll());
+			}
+			while (pending.size() > maxConcurrentFetches) {
+				emit(pending.poll());
+			}
+		}
+
+		void finish () throws ExtractionException {
+			while (!pending.isEmpty()) {
+				emit(pending.poll());
+			}
+		}
+
+		/**
+		 * Отменяет загрузки, которые не были переданы обработчику из-за ошибки
+		 */
+		void cancel () {
+			Pending item;
+			while ((item = pending.poll()) != null) {
+				if (item.task != null) {
+					item.task.cancel(true);
 				}
-				String contentType = connection.getContentType();
-
-				if (contentType.toLowerCase().startsWith("image/") || contentType.toLowerCase().startsWith("audio/") || contentType.toLowerCase().startsWith("video/")) {
-					type = contentType.substring(0, contentType.indexOf("/"));
-					extension = contentType.substring(contentType.indexOf("/") + 1);
-					try {
-						data = IOUtils.toByteArray(connection.getInputStream());
-					} catch (IOException e) {
-						throw new ExtractionException("Cannot get bytes from source: " + value);
-					}
-					result.add(new Description().setData(data).setExtension(extension).setType(type).setNode(node));
-				} else {
-					throw new InvalidTypeException(contentType);
+			}
+		}
+
+		private void emit (Pending item) throws ExtractionException {
+			if (item.task == null) {
+				handler.handle(describe(item.node, item.value, item.index, this));
+				return;
+			}
+			Description description;
+			try {
+				description = item.task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ExtractionException("Interrupted while fetching source: " + item.value);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof ExtractionException) {
+					throw (ExtractionException) cause;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
 				}
-			} else {
-				throw new UnsupportedFormatException(value);
+				throw new ExtractionException("Cannot fetch source: " + item.value + ". Exception: " + cause);
 			}
+			handler.handle(description);
 		}
-		return result;
+	}
+
+	/**
+	 * Элемент, ожидающий передачи обработчику
+	 */
+	private static class Pending {
+
+		private final Node node;
+
+		private final String value;
+
+		private final int index;
+
+		/**
+		 * Загрузка удаленного источника, null для встроенных данных
+		 */
+		private final FutureTask<Description> task;
+
+		Pending (Node node, String value, int index, FutureTask<Description> task) {
+			this.node = node;
+			this.value = value;
+			this.index = index;
+			this.task = task;
+		}
+
+		boolean isReady () {
+			return task == null || task.isDone();
+		}
+	}
+
+	/**
+	 * Общий исполнитель загрузок, создается при первом обращении
+	 */
+	private static class FetchExecutorHolder {
+
+		private static final Executor EXECUTOR = create();
+
+		private static Executor create () {
+			try {
+				// Виртуальные потоки доступны начиная с JDK 21, библиотека собирается под 1.8
+				return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (ReflectiveOperationException e) {
+				return Executors.newCachedThreadPool(runnable -> {
+					Thread thread = new Thread(runnable, "xml-byte-extractor-fetch");
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+		}
+	}
+
+	/**
+	 * Обработчик извлеченных данных. Позволяет обрабатывать данные по мере извлечения, не накапливая их в списке.
+	 */
+	public interface DescriptionHandler {
+
+		/**
+		 * Вызывается для каждого извлеченного элемента документа
+		 *
+		 * @param description описатель извлеченных данных
+		 * @throws ExtractionException если обработчик хочет прервать извлечение
+		 */
+		void handle (Description description) throws ExtractionException;
+	}
+
+	/**
+	 * Способ получения пути до файла, в который записываются данные элемента при извлечении в хранилище.
+	 * Для удаленных источников вызывается из потоков загрузки, поэтому реализация должна быть потокобезопасной.
+	 */
+	public interface StorageNaming {
+
+		/**
+		 * @param index     номер элемента в порядке документа, начиная с 0
+		 * @param type      тип данных image, audio, video
+		 * @param extension расширение файла
+		 * @return путь до файла, так же как в {@link ResourcesHelper#saveData(byte[], String...)}
+		 */
+		String[] path (int index, String type, String extension);
 	}
 
 	/**
@@ -210,8 +887,16 @@ public class XmlByteExtractor {
 
 		private String type;
 
+		private Description original;
+
+		private boolean shared;
+
+		private Path path;
+
+		private long size;
+
 		/**
-		 * @return байтовый массив полученных данных
+		 * @return байтовый массив полученных данных. Если данные разделяются с другим описателем, массив изменять нельзя
 		 */
 		public byte[] getData () {
 			return data;
@@ -219,6 +904,34 @@ public class XmlByteExtractor {
 
 		private Description setData (byte[] data) {
 			this.data = data;
+			if (data != null) {
+				this.size = data.length;
+			}
+			return this;
+		}
+
+		/**
+		 * @return путь до файла, в который записаны данные, или null, если данные возвращаются массивом
+		 * @see XmlByteExtractor#extractAll(ResourcesHelper, StorageNaming)
+		 */
+		public Path getPath () {
+			return path;
+		}
+
+		private Description setPath (Path path) {
+			this.path = path;
+			return this;
+		}
+
+		/**
+		 * @return размер данных в байтах
+		 */
+		public long getSize () {
+			return size;
+		}
+
+		private Description setSize (long size) {
+			this.size = size;
 			return this;
 		}
 
@@ -257,5 +970,27 @@ public class XmlByteExtractor {
 			this.type = type;
 			return this;
 		}
+
+		/**
+		 * @return описатель, с которым разделяются данные, или null, если данные принадлежат этому описателю. Также
+		 * null, если исходный описатель уже удален сборщиком мусора: механизм разделения не удерживает описатели.
+		 * @see XmlByteExtractor#setDeduplicator(DataUriDeduplicator)
+		 */
+		public Description getOriginal () {
+			return original;
+		}
+
+		/**
+		 * @return true если данные разделяются с другим описателем
+		 */
+		public boolean isShared () {
+			return shared;
+		}
+
+		private Description setOriginal (DataUriDeduplicator.Shared original) {
+			this.original = original.getOriginal();
+			this.shared = true;
+			return this;
+		}
 	}
 }
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.ServletContext;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+/**
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public class AsyncResourcesWriterTest {
+
+	private Path testFolder;
+
+	private ResourcesHelper helper;
+
+	@BeforeMethod
+	public void createTestFolder () throws IOException {
+		testFolder = Files.createTempDirectory("AsyncResourcesWriterTest");
+		ServletContext servletContext = mock(ServletContext.class);
+		when(servletContext.getRealPath("resources")).thenReturn(testFolder.toString());
+		helper = new ResourcesHelper("resources", servletContext);
+	}
+
+	@AfterMethod
+	public void deleteTestFolder () throws IOException {
+		FileUtils.deleteDirectory(testFolder.toFile());
+	}
+
+	@Test
+	public void testWrite () throws Exception {
+		List<CompletableFuture<Long>> results = new ArrayList<>();
+		try (AsyncResourcesWriter writer = new AsyncResourcesWriter(helper.setAtomicWrites(true), 16, 2)) {
+			for (int i = 0; i < 500; i++) {
+				results.add(writer.submit(("file " + i).getBytes(StandardCharsets.UTF_8), "import", "folder" + i % 5, i + ".txt"));
+			}
+			CompletableFuture<Long> offered = writer.offer("offered".getBytes(StandardCharsets.UTF_8), 10, TimeUnit.SECONDS, "offered.txt");
+			assertNotNull(offered);
+			assertEquals(offered.get(10, TimeUnit.SECONDS), Long.valueOf(7));
+			CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+			assertEquals(writer.getWrittenCount(), 501);
+			assertTrue(writer.getBatchesCount() <= 501);
+			assertTrue(writer.getDirectoriesCount() <= 501);
+		}
+		for (int i = 0; i < 500; i++) {
+			assertEquals(results.get(i).get(), Long.valueOf(("file " + i).length()));
+		}
+		assertEquals(new String(Files.readAllBytes(testFolder.resolve("import/folder3/123.txt")), StandardCharsets.UTF_8), "file 123");
+		assertEquals(testFolder.resolve("import/folder0").toFile().list().length, 100);
+	}
+
+	@Test
+	public void testWriteError () throws Exception {
+		Files.write(testFolder.resolve("file"), new byte[1]);
+		try (AsyncResourcesWriter writer = new AsyncResourcesWriter(helper, 4, 1)) {
+			CompletableFuture<Long> result = writer.submit(new byte[1], "file", "nested.txt");
+			try {
+				result.join();
+				fail("Parent of file is not a directory");
+			} catch (CompletionException e) {
+				assertTrue(e.getCause() instanceof IOException);
+			}
+			assertEquals(writer.getWrittenCount(), 0);
+		}
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testSubmitAfterClose () throws Exception {
+		AsyncResourcesWriter writer = new AsyncResourcesWriter(helper, 4, 1);
+		writer.close();
+		writer.submit(new byte[1], "file.txt");
+	}
+
+	@Test
+	public void testSubmitDuringClose () throws Exception {
+		for (int round = 0; round < 20; round++) {
+			AsyncResourcesWriter writer = new AsyncResourcesWriter(helper, 2, 2);
+			List<CompletableFuture<Long>> results = Collections.synchronizedList(new ArrayList<>());
+			CountDownLatch started = new CountDownLatch(4);
+			List<Thread> producers = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				int producer = i;
+				Thread thread = new Thread(() -> {
+					started.countDown();
+					try {
+						for (int n = 0; ; n++) {
+							results.add(writer.submit(new byte[1], "close", producer + "-" + n + ".txt"));
+						}
+					} catch (IllegalStateException | InterruptedException ignored) {
+						// Писатель закрыт
+					}
+				});
+				thread.start();
+				producers.add(thread);
+			}
+			started.await();
+			writer.close();
+			for (Thread thread : producers) {
+				thread.join(10000);
+				assertFalse(thread.isAlive());
+			}
+			// Все принятые задачи записаны к моменту завершения close()
+			for (CompletableFuture<Long> result : results) {
+				assertTrue(result.isDone());
+				assertEquals(result.get(), Long.valueOf(1));
+			}
+			assertEquals(writer.getWrittenCount(), results.size());
+			assertEquals(writer.getQueueSize(), 0);
+		}
+	}
+}
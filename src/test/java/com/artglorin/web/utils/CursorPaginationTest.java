@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public class CursorPaginationTest {
+
+	/**
+	 * Идентификаторы элементов в порядке сортировки
+	 */
+	private final List<Integer> items = new ArrayList<>();
+
+	{
+		for (int i = 1; i <= 25; i++) {
+			items.add(i * 10);
+		}
+	}
+
+	/**
+	 * Выполняет запрос по ключу так, как его выполнил бы слой доступа к данным, и строит нумерацию
+	 */
+	private CursorPagination page (String cursor, List<Integer> shown) {
+		CursorPaginationBuilder builder = PaginationBuilderImpl.getInstance().setItemsListSize(10).cursorBased().setCursor(cursor);
+		PageCursor position = builder.getCursor();
+		List<Integer> fetched = new ArrayList<>();
+		if (position == null || position.getDirection() == PageCursor.Direction.NEXT) {
+			for (Integer item : items) {
+				if ((position == null || item > Integer.parseInt(position.getKeys().get(0))) && fetched.size() < builder.getFetchSize()) {
+					fetched.add(item);
+				}
+			}
+		} else {
+			for (int i = items.size() - 1; i >= 0; i--) {
+				if (items.get(i) < Integer.parseInt(position.getKeys().get(0)) && fetched.size() < builder.getFetchSize()) {
+					fetched.add(items.get(i));
+				}
+			}
+		}
+		builder.setFetchedItemsCount(fetched.size());
+		if (fetched.size() > 10) {
+			fetched.remove(10);
+		}
+		if (position != null && position.getDirection() == PageCursor.Direction.PREVIOUS) {
+			Collections.reverse(fetched);
+		}
+		shown.clear();
+		shown.addAll(fetched);
+		if (!fetched.isEmpty()) {
+			builder.setFirstItemKeys(fetched.get(0).toString()).setLastItemKeys(fetched.get(fetched.size() - 1).toString());
+		}
+		return builder.build();
+	}
+
+	@Test
+	public void testWalkForwardAndBack () {
+		List<Integer> shown = new ArrayList<>();
+		CursorPagination first = page(null, shown);
+		assertEquals(shown.get(0), Integer.valueOf(10));
+		assertEquals(shown.size(), 10);
+		assertFalse(first.isExistPreviousSet());
+		assertTrue(first.isExistNextSet());
+		assertNull(first.getCursor());
+		assertEquals(first.getItemsListSize(), 10);
+
+		CursorPagination second = page(first.getNextCursor(), shown);
+		assertEquals(shown.get(0), Integer.valueOf(110));
+		assertTrue(second.isExistPreviousSet());
+		assertTrue(second.isExistNextSet());
+
+		CursorPagination last = page(second.getNextCursor(), shown);
+		assertEquals(shown, Arrays.asList(210, 220, 230, 240, 250));
+		assertTrue(last.isExistPreviousSet());
+		assertFalse(last.isExistNextSet());
+		assertNull(last.getNextCursor());
+
+		CursorPagination back = page(last.getPreviousCursor(), shown);
+		assertEquals(shown.get(0), Integer.valueOf(110));
+		assertEquals(shown.get(9), Integer.valueOf(200));
+		assertTrue(back.isExistPreviousSet());
+		assertTrue(back.isExistNextSet());
+
+		CursorPagination start = page(back.getPreviousCursor(), shown);
+		assertEquals(shown.get(0), Integer.valueOf(10));
+		assertFalse(start.isExistPreviousSet());
+		assertTrue(start.isExistNextSet());
+	}
+
+	@Test
+	public void testEncodeDecode () {
+		PageCursor cursor = new PageCursor(PageCursor.Direction.PREVIOUS, "2026-10-18T10:00:00Z", "Привет/+=", "");
+		String encoded = cursor.encode();
+		assertTrue(encoded.matches("[A-Za-z0-9_-]+"));
+		assertEquals(PageCursor.decode(encoded), cursor);
+		assertEquals(PageCursor.decode(encoded).getKeys().get(1), "Привет/+=");
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testInvalidCursor () {
+		CursorPaginationBuilderImpl.getInstance().setCursor("not a cursor");
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testTruncatedCursor () {
+		String encoded = new PageCursor(PageCursor.Direction.NEXT, "key").encode();
+		PageCursor.decode(encoded.substring(0, encoded.length() - 2));
+	}
+
+	@Test
+	public void testEmptyResult () {
+		CursorPagination pagination = CursorPaginationBuilderImpl.getInstance().setFetchedItemsCount(0).build();
+		assertFalse(pagination.isExistNextSet());
+		assertFalse(pagination.isExistPreviousSet());
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Required argument keys is empty")
+	public void testEmptyKeys () {
+		CursorPaginationBuilderImpl.getInstance().setLastItemKeys();
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Required argument keys contains null")
+	public void testNullKey () {
+		CursorPaginationBuilderImpl.getInstance().setFirstItemKeys("key", null);
+	}
+
+	@Test
+	public void testListSizeCarriesOver () {
+		CursorPaginationBuilder builder = PaginationBuilderImpl.getInstance().setItemsListSize(25).cursorBased();
+		assertEquals(builder.getFetchSize(), 26);
+	}
+}
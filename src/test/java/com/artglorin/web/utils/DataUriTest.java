@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import com.artglorin.web.utils.exceptions.*;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public class DataUriTest {
+
+	@Test
+	public void testHeader () throws ExtractionException {
+		DataUri dataUri = DataUri.parse("data:image/png;base64,U3RyaW5n");
+		assertEquals(dataUri.getType(), "image");
+		assertEquals(dataUri.getExtension(), "png");
+		assertEquals(dataUri.getEncodedLength(), 8);
+		assertEquals(dataUri.getDecodedLength(), 6);
+		assertEquals(dataUri.decode(), "String".getBytes());
+	}
+
+	@Test
+	public void testDecodeSameAsJdk () throws ExtractionException, IOException {
+		Random random = new Random(42);
+		for (int size = 0; size < 20000; size += 1 + size / 3) {
+			byte[] data = new byte[size];
+			random.nextBytes(data);
+			String encoded = Base64.getEncoder().encodeToString(data);
+			String unpadded = Base64.getEncoder().withoutPadding().encodeToString(data);
+			for (String payload : new String[]{encoded, unpadded}) {
+				DataUri dataUri = DataUri.parse("data:image/png;base64," + payload);
+				assertEquals(dataUri.getDecodedLength(), size);
+				assertEquals(dataUri.decode(), data);
+
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				assertEquals(dataUri.decode(out), size);
+				assertEquals(out.toByteArray(), data);
+
+				ByteBuffer direct = ByteBuffer.allocateDirect(size + 2);
+				direct.put((byte) 1);
+				assertEquals(dataUri.decode(direct), size);
+				direct.flip().position(1);
+				byte[] fromDirect = new byte[size];
+				direct.get(fromDirect);
+				assertEquals(fromDirect, data);
+
+				ByteBuffer heap = ByteBuffer.allocate(size + 1);
+				heap.put((byte) 1);
+				assertEquals(dataUri.decode(heap), size);
+				assertEquals(heap.position(), size + 1);
+			}
+		}
+	}
+
+	@Test(expectedExceptions = DecodeException.class)
+	public void testInvalidLength () throws ExtractionException {
+		DataUri.parse("data:image/png;base64,iiVBORw0K").decode();
+	}
+
+	@Test(expectedExceptions = DecodeException.class)
+	public void testInvalidCharacter () throws ExtractionException {
+		DataUri.parse("data:image/png;base64,U3Ry-W5n").decode();
+	}
+
+	@Test(expectedExceptions = DecodeException.class)
+	public void testInvalidPadding () throws ExtractionException {
+		DataUri.parse("data:image/png;base64,U3RyaW=").decode();
+	}
+
+	@Test(expectedExceptions = DecodeException.class)
+	public void testPaddingInsideData () throws ExtractionException {
+		DataUri.parse("data:image/png;base64,U3=yaW5n").decode();
+	}
+
+	@Test(expectedExceptions = DecodeException.class)
+	public void testNotEnoughSpaceInBuffer () throws ExtractionException {
+		DataUri.parse("data:image/png;base64,U3RyaW5n").decode(ByteBuffer.allocate(5));
+	}
+
+	@Test(expectedExceptions = InvalidExtensionException.class)
+	public void testExtensionOutsideOfFolder () throws ExtractionException {
+		DataUri.parse("data:image/../../escaped;base64,U3RyaW5n");
+	}
+
+	@Test(expectedExceptions = InvalidTypeException.class)
+	public void testTypeOutsideOfFolder () throws ExtractionException {
+		DataUri.parse("data:..\\image/png;base64,U3RyaW5n");
+	}
+
+	@Test
+	public void testTokens () {
+		assertTrue(DataUri.isToken("svg+xml"));
+		assertTrue(DataUri.isToken("vnd.microsoft.icon"));
+		assertFalse(DataUri.isToken(".."));
+		assertFalse(DataUri.isToken(".hidden"));
+		assertFalse(DataUri.isToken("a..b"));
+		assertFalse(DataUri.isToken("png/x"));
+		assertFalse(DataUri.isToken(""));
+	}
+
+	@Test(expectedExceptions = InvalidDecodeTypeException.class)
+	public void testUnsupportedEncoding () throws ExtractionException {
+		DataUri.parse("data:image/png;base6,U3RyaW5n");
+	}
+
+	@Test(expectedExceptions = UnsupportedFormatException.class)
+	public void testNotDataUri () throws ExtractionException {
+		DataUri.parse("http://example.com/image.png");
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public class LongPaginationTest {
+
+	@Test
+	public void testSameAsIntPagination(){
+		for (int total = 0; total <= 30; total++) {
+			for (int listSize = 1; listSize <= 3; listSize++) {
+				for (int pagesInSet = 1; pagesInSet <= 4; pagesInSet++) {
+					for (int page = -1; page <= 12; page++) {
+						Pagination expected = PaginationBuilderImpl.getInstance().setCurrentPageNumber(page).setItemsListSize(listSize).setTotalItemsCount(total).setPagesCountInSet(pagesInSet).build();
+						LongPagination pagination = LongPaginationBuilderImpl.getInstance().setCurrentPageNumber(page).setItemsListSize(listSize).setTotalItemsCount(total).setPagesCountInSet(pagesInSet).build();
+						assertEquals(pagination.getCurrentPage(), expected.getCurrentPage());
+						assertEquals(pagination.getFirstPageInSet(), expected.getFirstPageInSet());
+						assertEquals(pagination.getLastPageInSet(), expected.getLastPageInSet());
+						assertEquals(pagination.getSetPages().size(), expected.getSetPages().size());
+						assertEquals(pagination.isExistPreviousSet(), expected.isExistPreviousSet());
+						assertEquals(pagination.isExistNextSet(), expected.isExistNextSet());
+						assertEquals(pagination.getOffset(), (expected.getCurrentPage() - 1) * listSize);
+						assertEquals(pagination.getLimit(), listSize);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBillionsOfItems(){
+		long total = 5_000_000_000L;
+		LongPagination pagination = LongPaginationBuilderImpl.getInstance()
+				.setTotalItemsCount(total)
+				.setItemsListSize(20)
+				.setPagesCountInSet(10)
+				.setCurrentPageNumber(200_000_000L)
+				.build();
+		assertEquals(pagination.getTotalPages(), 250_000_000L);
+		assertEquals(pagination.getTotalItemsCount(), total);
+		assertEquals(pagination.getCurrentPage(), 200_000_000L);
+		assertEquals(pagination.getFirstPageInSet(), 199_999_991L);
+		assertEquals(pagination.getLastPageInSet(), 200_000_000L);
+		assertEquals(pagination.getOffset(), 3_999_999_980L);
+		assertEquals(pagination.getLimit(), 20);
+		assertTrue(pagination.isExistPreviousSet());
+		assertTrue(pagination.isExistNextSet());
+		assertEquals(pagination.getSetPages().get(0), Long.valueOf(199_999_991L));
+		assertTrue(pagination.getSetPages().contains(200_000_000L));
+	}
+
+	@Test
+	public void testLastPageOfMaxTotal(){
+		LongPagination pagination = LongPaginationBuilderImpl.getInstance()
+				.setTotalItemsCount(Long.MAX_VALUE)
+				.setItemsListSize(1)
+				.setPagesCountInSet(5)
+				.setCurrentPageNumber(Long.MAX_VALUE)
+				.build();
+		assertEquals(pagination.getLastPageInSet(), Long.MAX_VALUE);
+		assertEquals(pagination.getOffset(), Long.MAX_VALUE - 1);
+		assertFalse(pagination.isExistNextSet());
+		assertEquals(pagination.getSetPages(), Arrays.asList(Long.MAX_VALUE - 1, Long.MAX_VALUE));
+
+		PrimitiveIterator.OfLong iterator = pagination.getSetPagesIterator();
+		assertEquals(iterator.nextLong(), Long.MAX_VALUE - 1);
+		assertEquals(iterator.nextLong(), Long.MAX_VALUE);
+		assertFalse(iterator.hasNext());
+	}
+}
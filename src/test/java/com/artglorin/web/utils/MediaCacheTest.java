@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import com.artglorin.web.utils.exceptions.ExtractionException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.servlet.ServletContext;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+/**
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public class MediaCacheTest {
+
+	private HttpServer server;
+
+	private String serverUrl;
+
+	private final AtomicInteger bodies = new AtomicInteger();
+
+	private Path storeFolder;
+
+	@BeforeClass
+	public void init () throws IOException {
+		storeFolder = Files.createTempDirectory("MediaCacheTestFolder");
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/fresh", exchange -> respond(exchange, "max-age=60", null));
+		server.createContext("/etag", exchange -> {
+			if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+			} else {
+				respond(exchange, "no-cache", "\"v1\"");
+			}
+		});
+		server.createContext("/nostore", exchange -> respond(exchange, "no-store", "\"v1\""));
+		server.start();
+		serverUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	@AfterClass
+	public void stop () throws IOException {
+		server.stop(0);
+		FileUtils.deleteDirectory(storeFolder.toFile());
+	}
+
+	private void respond (HttpExchange exchange, String cacheControl, String etag) throws IOException {
+		bodies.incrementAndGet();
+		byte[] body = exchange.getRequestURI().getPath().getBytes();
+		exchange.getResponseHeaders().set("Content-Type", "image/gif");
+		exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+		if (etag != null) {
+			exchange.getResponseHeaders().set("ETag", etag);
+		}
+		exchange.sendResponseHeaders(200, body.length);
+		exchange.getResponseBody().write(body);
+		exchange.close();
+	}
+
+	private List<XmlByteExtractor.Description> extract (String path, MediaCache cache) throws ExtractionException {
+		return extract(path, cache, null);
+	}
+
+	private List<XmlByteExtractor.Description> extract (String path, MediaCache cache, ResourcesHelper storage) throws ExtractionException {
+		Document document;
+		try {
+			document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		} catch (ParserConfigurationException e) {
+			throw new IllegalStateException(e);
+		}
+		Element root = document.createElement("div");
+		document.appendChild(root);
+		Element img = document.createElement("img");
+		img.setAttribute("src", serverUrl + path);
+		root.appendChild(img);
+		XmlByteExtractor extractor = new XmlByteExtractor(document).setMediaCache(cache);
+		return storage == null ? extractor.extractImage() : extractor.extractAll(storage, (index, type, extension) -> new String[]{index + "." + extension});
+	}
+
+	@Test
+	public void testFreshEntryIsNotFetched () throws ExtractionException {
+		MediaCache cache = new MediaCache(new MemoryMediaStore(1024));
+		int before = bodies.get();
+		assertEquals(extract("/fresh", cache).get(0).getData(), "/fresh".getBytes());
+		List<XmlByteExtractor.Description> result = extract("/fresh", cache);
+		assertEquals(result.get(0).getData(), "/fresh".getBytes());
+		assertEquals(result.get(0).getExtension(), "gif");
+		assertEquals(bodies.get() - before, 1);
+		assertEquals(cache.getMisses(), 1);
+		assertEquals(cache.getHits(), 1);
+		assertEquals(cache.getHitRate(), 0.5);
+
+		// Изменение полученных данных не портит кеш
+		result.get(0).getData()[0] = 0;
+		assertEquals(extract("/fresh", cache).get(0).getData(), "/fresh".getBytes());
+	}
+
+	@Test
+	public void testConditionalRequest () throws ExtractionException {
+		MediaCache cache = new MediaCache(new MemoryMediaStore(1024));
+		int before = bodies.get();
+		extract("/etag", cache);
+		assertEquals(extract("/etag", cache).get(0).getData(), "/etag".getBytes());
+		assertEquals(bodies.get() - before, 1);
+		assertEquals(cache.getMisses(), 1);
+		assertEquals(cache.getHits(), 0);
+		assertEquals(cache.getRevalidations(), 1);
+	}
+
+	@Test
+	public void testNoStore () throws ExtractionException {
+		MediaCache cache = new MediaCache(new MemoryMediaStore(1024));
+		int before = bodies.get();
+		extract("/nostore", cache);
+		extract("/nostore", cache);
+		assertEquals(bodies.get() - before, 2);
+		assertEquals(cache.getMisses(), 2);
+	}
+
+	@Test
+	public void testStoredFileIsCachedOnlyWhenAllowed () throws IOException, ExtractionException {
+		AtomicInteger puts = new AtomicInteger();
+		MemoryMediaStore memory = new MemoryMediaStore(1024);
+		MediaCache cache = new MediaCache(new MediaStore() {
+
+			@Override
+			public MediaCache.Entry get (String url) {
+				return memory.get(url);
+			}
+
+			@Override
+			public void put (String url, MediaCache.Entry entry) {
+				puts.incrementAndGet();
+				memory.put(url, entry);
+			}
+
+			@Override
+			public void remove (String url) {
+				memory.remove(url);
+			}
+		});
+		Path folder = Files.createTempDirectory("MediaCacheTest");
+		ServletContext servletContext = mock(ServletContext.class);
+		when(servletContext.getRealPath("media")).thenReturn(folder.toString());
+		ResourcesHelper storage = new ResourcesHelper("media", servletContext);
+		try {
+			assertNotNull(extract("/nostore", cache, storage).get(0).getPath());
+			assertEquals(puts.get(), 0);
+
+			cache.setMaxEntrySize(3);
+			assertEquals(extract("/fresh", cache, storage).get(0).getSize(), "/fresh".length());
+			assertEquals(puts.get(), 0);
+
+			cache.setMaxEntrySize(MediaCache.DEFAULT_MAX_ENTRY_SIZE);
+			extract("/fresh", cache, storage);
+			assertEquals(puts.get(), 1);
+			assertEquals(memory.get(serverUrl + "/fresh").getData(), "/fresh".getBytes());
+		} finally {
+			FileUtils.deleteDirectory(folder.toFile());
+		}
+	}
+
+	@Test
+	public void testMemoryStoreEvictsLeastRecentlyUsed () {
+		MemoryMediaStore store = new MemoryMediaStore(10);
+		store.put("a", new MediaCache.Entry("image/png", new byte[4], null, null, Long.MAX_VALUE));
+		store.put("b", new MediaCache.Entry("image/png", new byte[4], null, null, Long.MAX_VALUE));
+		assertNotNull(store.get("a"));
+		store.put("c", new MediaCache.Entry("image/png", new byte[4], null, null, Long.MAX_VALUE));
+		assertNotNull(store.get("a"));
+		assertNull(store.get("b"));
+		assertNotNull(store.get("c"));
+		assertEquals(store.getBytes(), 8);
+		store.put("d", new MediaCache.Entry("image/png", new byte[11], null, null, Long.MAX_VALUE));
+		assertNull(store.get("d"));
+		assertEquals(store.size(), 2);
+	}
+
+	@Test
+	public void testFileStoreAsSecondLevel () throws IOException, ExtractionException {
+		MediaCache cache = new MediaCache(new MemoryMediaStore(1024, new FileMediaStore(storeFolder)));
+		int before = bodies.get();
+		extract("/fresh?disk", cache);
+
+		// Новый кеш в памяти поднимает запись с диска
+		MediaCache restarted = new MediaCache(new MemoryMediaStore(1024, new FileMediaStore(storeFolder)));
+		assertEquals(extract("/fresh?disk", restarted).get(0).getData(), "/fresh".getBytes());
+		assertEquals(bodies.get() - before, 1);
+		assertEquals(restarted.getHits(), 1);
+
+		restarted.getStore().remove(serverUrl + "/fresh?disk");
+		assertNull(new FileMediaStore(storeFolder).get(serverUrl + "/fresh?disk"));
+	}
+
+	@Test
+	public void testFileStoreKeepsDataByContent () throws IOException {
+		Path folder = Files.createTempDirectory("FileMediaStoreTest");
+		try {
+			FileMediaStore store = new FileMediaStore(folder, 12);
+			store.put("http://a/1", new MediaCache.Entry("image/png", "Logo!".getBytes(), "\"1\"", null, 0));
+			store.put("http://b/2", new MediaCache.Entry("image/gif", "Logo!".getBytes(), "\"2\"", null, 0));
+			// Одинаковые данные разных источников хранятся один раз
+			assertEquals(store.getBytes(), 5);
+			assertEquals(folder.resolve("data").toFile().list().length, 1);
+			assertEquals(store.get("http://b/2").getData(), "Logo!".getBytes());
+			assertEquals(store.get("http://b/2").getContentType(), "image/gif");
+
+			// Данные из файла копируются: изменение файла после сохранения не влияет на запись
+			Path file = folder.resolve("stored.bin");
+			Files.write(file, "Other".getBytes());
+			store.put("http://c/3", new MediaCache.Entry("image/png", null, "\"3\"", null, 0), file);
+			Files.write(file, "Wrong".getBytes());
+			assertEquals(store.get("http://c/3").getData(), "Other".getBytes());
+			assertEquals(store.getBytes(), 10);
+
+			// Больше 12 байт не помещается: вытесняются давно не использованные данные
+			store.get("http://a/1");
+			store.put("http://d/4", new MediaCache.Entry("image/png", "Third".getBytes(), "\"4\"", null, 0));
+			assertEquals(store.getBytes(), 10);
+			assertNull(store.get("http://c/3"));
+			assertFalse(Files.exists(folder.resolve(Digests.sha256Hex("http://c/3") + ".meta")));
+			assertNotNull(store.get("http://a/1"));
+
+			// Данные, которые больше всего хранилища, не сохраняются
+			store.put("http://e/5", new MediaCache.Entry("image/png", new byte[13], "\"5\"", null, 0));
+			assertNull(store.get("http://e/5"));
+
+			// Уже сохраненные данные учитываются после перезапуска
+			assertEquals(new FileMediaStore(folder, 12).getBytes(), 10);
+			assertEquals(new FileMediaStore(folder, 5).getBytes(), 5);
+		} finally {
+			FileUtils.deleteDirectory(folder.toFile());
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public class PagePrefetcherTest {
+
+	private final PaginationFactory factory = new PaginationFactory(1, 3);
+
+	@Test
+	public void testPrefetchNeighbours () throws Exception {
+		List<Integer> loaded = new ArrayList<>();
+		PagePrefetcher<String> prefetcher = new PagePrefetcher<>(page -> {
+			loaded.add(page);
+			return "page " + page;
+		}, Runnable::run, 8);
+		prefetcher.prefetch(factory.of(10, 5));
+		assertEquals(loaded.toString(), "[4, 6]");
+		assertEquals(prefetcher.getPage(6), "page 6");
+		assertEquals(prefetcher.getPage(5), "page 5");
+		assertEquals(prefetcher.getPage(5), "page 5");
+		assertEquals(prefetcher.getPage(6), "page 6");
+		assertEquals(loaded.toString(), "[4, 6, 5]");
+		assertEquals(prefetcher.getHits(), 1);
+		assertEquals(prefetcher.getMisses(), 1);
+		assertEquals(prefetcher.getReused(), 2);
+		assertEquals(prefetcher.getHitRate(), 0.25);
+		assertEquals(prefetcher.getPrefetched(), 2);
+
+		prefetcher.setDistance(2).prefetch(factory.of(10, 10));
+		assertEquals(loaded.toString(), "[4, 6, 5, 8, 9]");
+		prefetcher.prefetch(factory.of(10, 6));
+		assertEquals(loaded.toString(), "[4, 6, 5, 8, 9, 7]");
+	}
+
+	@Test
+	public void testInexactTotal () throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		PagePrefetcher<Integer> prefetcher = new PagePrefetcher<>(page -> loads.incrementAndGet(), Runnable::run, 8);
+		PaginationBuilder builder = PaginationBuilderImpl.getInstance().setItemsListSize(1).setPagesCountInSet(3);
+		// На третьей странице выбран один элемент: следующей страницы нет
+		prefetcher.prefetch(builder.setTotalItemsCountAtLeast(0).setCurrentPageNumber(3).setFetchedItemsCount(1).build());
+		assertEquals(loads.get(), 1);
+		// Выбрано на элемент больше размера страницы: четвертая страница существует
+		prefetcher.prefetch(builder.setTotalItemsCountAtLeast(0).setCurrentPageNumber(3).setFetchedItemsCount(2).build());
+		assertEquals(loads.get(), 2);
+	}
+
+	@Test
+	public void testCancelOnNavigate () throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			PagePrefetcher<Integer> prefetcher = new PagePrefetcher<>(page -> {
+				started.countDown();
+				release.await();
+				return page;
+			}, executor, 8);
+			prefetcher.prefetch(factory.of(10, 5));
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			prefetcher.prefetch(factory.of(10, 1));
+			assertEquals(prefetcher.getCancelled(), 2);
+			release.countDown();
+			// Дождемся, пока исполнитель загрузит вторую страницу
+			executor.submit(() -> null).get(10, TimeUnit.SECONDS);
+			assertEquals(prefetcher.getPage(2), Integer.valueOf(2));
+			assertEquals(prefetcher.getPage(4), Integer.valueOf(4));
+			assertEquals(prefetcher.getHits(), 1);
+			assertEquals(prefetcher.getMisses(), 1);
+			assertEquals(prefetcher.getHitRate(), 0.5);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFailedPrefetchLoadsOnDemand () throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		PagePrefetcher<Integer> prefetcher = new PagePrefetcher<>(page -> {
+			if (loads.incrementAndGet() == 1) {
+				throw new IllegalStateException("Database is not available");
+			}
+			return page;
+		}, Runnable::run, 1);
+		prefetcher.prefetch(factory.of(2, 1));
+		assertEquals(prefetcher.getPage(2), Integer.valueOf(2));
+		assertEquals(loads.get(), 2);
+		assertEquals(prefetcher.getMisses(), 1);
+	}
+
+	@Test
+	public void testQueuedPrefetchRunsInline () throws Exception {
+		List<Runnable> queued = new ArrayList<>();
+		AtomicInteger loads = new AtomicInteger();
+		PagePrefetcher<Integer> prefetcher = new PagePrefetcher<>(page -> {
+			loads.incrementAndGet();
+			return page;
+		}, queued::add, 8);
+		prefetcher.prefetch(factory.of(10, 5));
+		assertEquals(queued.size(), 2);
+		// Исполнитель еще не начал загрузку, она выполняется в текущем потоке без ожидания
+		assertEquals(prefetcher.getPage(6), Integer.valueOf(6));
+		assertEquals(loads.get(), 1);
+		assertEquals(prefetcher.getMisses(), 1);
+		assertEquals(prefetcher.getHits(), 0);
+		for (Runnable task : queued) {
+			task.run();
+		}
+		assertEquals(loads.get(), 2);
+		assertEquals(prefetcher.getPage(4), Integer.valueOf(4));
+		assertEquals(prefetcher.getHits(), 1);
+	}
+
+	@Test
+	public void testLastIntPage () {
+		List<Integer> loaded = new ArrayList<>();
+		PagePrefetcher<Integer> prefetcher = new PagePrefetcher<>(page -> {
+			loaded.add(page);
+			return page;
+		}, Runnable::run, 8);
+		// Следующая страница может существовать, но ее номер не помещается в int
+		prefetcher.prefetch(PaginationBuilderImpl.getInstance().setItemsListSize(1).setPagesCountInSet(3)
+				.setTotalItemsCountAtLeast(0).setCurrentPageNumber(Integer.MAX_VALUE).setFetchedItemsCount(2).build());
+		assertEquals(loaded.toString(), "[" + (Integer.MAX_VALUE - 1) + "]");
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public class PaginationRendererTest {
+
+	private final PaginationFactory factory = new PaginationFactory(1, 3);
+
+	@Test
+	public void testHtml () throws IOException {
+		PaginationRenderer renderer = new PaginationRenderer("/list?sort=name&page={page}");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		renderer.writeHtml(factory.of(10, 5), out);
+		assertEquals(new String(out.toByteArray(), StandardCharsets.UTF_8), "<nav role=\"navigation\"><ul class=\"pager\">"
+				+ "<li class=\"previous\"><a href=\"/list?sort=name&amp;page=4\">&larr;</a></li><li><a href=\"/list?sort=name&amp;page=3\">&hellip;</a></li>"
+				+ "<li><a href=\"/list?sort=name&amp;page=4\">4</a></li>"
+				+ "<li class=\"active\"><a href=\"/list?sort=name&amp;page=5\">5</a></li>"
+				+ "<li><a href=\"/list?sort=name&amp;page=6\">6</a></li>"
+				+ "<li><a href=\"/list?sort=name&amp;page=7\">&hellip;</a></li><li class=\"next\"><a href=\"/list?sort=name&amp;page=6\">&rarr;</a></li>"
+				+ "</ul></nav>");
+
+		assertEquals(new String(renderer.renderHtml(factory.of(2, 1)), StandardCharsets.UTF_8), "<nav role=\"navigation\"><ul class=\"pager\">"
+				+ "<li class=\"active\"><a href=\"/list?sort=name&amp;page=1\">1</a></li>"
+				+ "<li><a href=\"/list?sort=name&amp;page=2\">2</a></li>"
+				+ "<li class=\"next\"><a href=\"/list?sort=name&amp;page=2\">&rarr;</a></li>"
+				+ "</ul></nav>");
+	}
+
+	@Test
+	public void testHtmlWithEdgePages () {
+		PaginationRenderer renderer = new PaginationRenderer("/list?page={page}");
+		PaginationFactory edges = new PaginationFactory(1, 7, PageWindowStrategy.EDGES);
+		// [1] 2 3 4 5 6 ... 50
+		assertEquals(new String(renderer.renderHtml(edges.of(50, 1)), StandardCharsets.UTF_8), "<nav role=\"navigation\"><ul class=\"pager\">"
+				+ "<li class=\"active\"><a href=\"/list?page=1\">1</a></li>"
+				+ "<li><a href=\"/list?page=2\">2</a></li>"
+				+ "<li><a href=\"/list?page=3\">3</a></li>"
+				+ "<li><a href=\"/list?page=4\">4</a></li>"
+				+ "<li><a href=\"/list?page=5\">5</a></li>"
+				+ "<li><a href=\"/list?page=6\">6</a></li>"
+				+ "<li><a href=\"/list?page=7\">&hellip;</a></li>"
+				+ "<li><a href=\"/list?page=50\">50</a></li>"
+				+ "<li class=\"next\"><a href=\"/list?page=2\">&rarr;</a></li>"
+				+ "</ul></nav>");
+		// 1 ... 7 8 [9] 10 11 ... 50
+		assertEquals(new String(renderer.renderHtml(edges.of(50, 9)), StandardCharsets.UTF_8), "<nav role=\"navigation\"><ul class=\"pager\">"
+				+ "<li class=\"previous\"><a href=\"/list?page=8\">&larr;</a></li>"
+				+ "<li><a href=\"/list?page=1\">1</a></li>"
+				+ "<li><a href=\"/list?page=6\">&hellip;</a></li>"
+				+ "<li><a href=\"/list?page=7\">7</a></li>"
+				+ "<li><a href=\"/list?page=8\">8</a></li>"
+				+ "<li class=\"active\"><a href=\"/list?page=9\">9</a></li>"
+				+ "<li><a href=\"/list?page=10\">10</a></li>"
+				+ "<li><a href=\"/list?page=11\">11</a></li>"
+				+ "<li><a href=\"/list?page=12\">&hellip;</a></li>"
+				+ "<li><a href=\"/list?page=50\">50</a></li>"
+				+ "<li class=\"next\"><a href=\"/list?page=10\">&rarr;</a></li>"
+				+ "</ul></nav>");
+		// 1 ... 45 46 47 48 49 [50]
+		String last = new String(renderer.renderHtml(edges.of(50, 50)), StandardCharsets.UTF_8);
+		assertTrue(last.startsWith("<nav role=\"navigation\"><ul class=\"pager\">"
+				+ "<li class=\"previous\"><a href=\"/list?page=49\">&larr;</a></li>"
+				+ "<li><a href=\"/list?page=1\">1</a></li>"
+				+ "<li><a href=\"/list?page=44\">&hellip;</a></li>"
+				+ "<li><a href=\"/list?page=45\">45</a></li>"), last);
+		assertTrue(last.endsWith("<li class=\"active\"><a href=\"/list?page=50\">50</a></li></ul></nav>"), last);
+		// Набор доходит до последней страницы, многоточие после него не нужно
+		String near = new String(renderer.renderHtml(new PaginationFactory(1, 5, PageWindowStrategy.EDGES).of(7, 5)), StandardCharsets.UTF_8);
+		assertTrue(near.endsWith("<li class=\"active\"><a href=\"/list?page=5\">5</a></li>"
+				+ "<li><a href=\"/list?page=6\">6</a></li>"
+				+ "<li><a href=\"/list?page=7\">7</a></li>"
+				+ "<li class=\"next\"><a href=\"/list?page=6\">&rarr;</a></li></ul></nav>"), near);
+	}
+
+	@Test
+	public void testJson () {
+		PaginationRenderer renderer = new PaginationRenderer("/list/{page}?q=\"a\"");
+		assertEquals(new String(renderer.renderJson(factory.of(10, 10)), StandardCharsets.UTF_8),
+				"{\"current\":10,\"first\":10,\"last\":10,\"totalPages\":10,\"previous\":\"/list/9?q=\\\"a\\\"\",\"next\":null,"
+						+ "\"previousSet\":\"/list/9?q=\\\"a\\\"\",\"nextSet\":null,"
+						+ "\"pages\":[{\"page\":10,\"url\":\"/list/10?q=\\\"a\\\"\"}]}");
+	}
+
+	@Test
+	public void testCache () {
+		PaginationRenderer renderer = new PaginationRenderer("/list?page={page}", 16);
+		byte[] first = renderer.renderHtml(factory.of(10, 5));
+		assertEquals(renderer.renderHtml(factory.of(10, 5)), first);
+		assertNotEquals(renderer.renderHtml(factory.of(10, 6)), first);
+		assertEquals(renderer.getCacheHits(), 1);
+		assertEquals(renderer.getCacheMisses(), 2);
+
+		// Копия не влияет на закэшированный результат
+		first[0] = 0;
+		assertEquals(renderer.renderHtml(factory.of(10, 5))[0], '<');
+
+		PaginationRenderer uncached = new PaginationRenderer("/list?page={page}", 0);
+		assertEquals(uncached.renderJson(factory.of(10, 5)), renderer.renderJson(factory.of(10, 5)));
+		assertEquals(uncached.getCacheHits(), 0);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testTemplateWithoutPage () {
+		new PaginationRenderer("/list");
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2015 Verminsky V.V. (develop@artglorin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.artglorin.web.utils;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Verminsky V.V. e-mail: develop@artglorin.com
+ * @version 0.0.1
+ *          Created on 18.10.26.
+ */
+public class PaginationSerializerTest {
+
+	private final PaginationFactory factory = new PaginationFactory(1, 3);
+
+	private final PaginationSerializer serializer = new PaginationSerializer("/api/items?page={page}");
+
+	@Test
+	public void testLinkHeader () {
+		assertEquals(serializer.toLinkHeader(factory.of(10, 5)), "</api/items?page=1>; rel=\"first\", </api/items?page=4>; rel=\"prev\", "
+				+ "</api/items?page=6>; rel=\"next\", </api/items?page=10>; rel=\"last\"");
+		assertEquals(serializer.toLinkHeader(factory.of(10, 1)), "</api/items?page=1>; rel=\"first\", </api/items?page=2>; rel=\"next\", "
+				+ "</api/items?page=10>; rel=\"last\"");
+		assertEquals(serializer.toLinkHeader(factory.of(10, 10)), "</api/items?page=1>; rel=\"first\", </api/items?page=9>; rel=\"prev\", "
+				+ "</api/items?page=10>; rel=\"last\"");
+
+		// Без точного количества ссылки на последнюю страницу нет
+		Pagination estimated = PaginationBuilderImpl.getInstance().setItemsListSize(1).setPagesCountInSet(3)
+				.setTotalItemsCountAtLeast(0).setCurrentPageNumber(3).setFetchedItemsCount(2).build();
+		assertEquals(serializer.toLinkHeader(estimated), "</api/items?page=1>; rel=\"first\", </api/items?page=2>; rel=\"prev\", "
+				+ "</api/items?page=4>; rel=\"next\"");
+	}
+
+	@Test
+	public void testJsonWithEdgePages () {
+		PaginationFactory edges = new PaginationFactory(1, 5, PageWindowStrategy.EDGES);
+		assertEquals(serializer.toJson(edges.of(10, 5)), "{\"current\":5,\"first\":4,\"last\":6,\"totalPages\":10,"
+				+ "\"previous\":\"/api/items?page=4\",\"next\":\"/api/items?page=6\","
+				+ "\"previousSet\":\"/api/items?page=3\",\"nextSet\":\"/api/items?page=7\","
+				+ "\"firstPage\":{\"page\":1,\"url\":\"/api/items?page=1\"},\"lastPage\":{\"page\":10,\"url\":\"/api/items?page=10\"},"
+				+ "\"pages\":[{\"page\":4,\"url\":\"/api/items?page=4\"},{\"page\":5,\"url\":\"/api/items?page=5\"},"
+				+ "{\"page\":6,\"url\":\"/api/items?page=6\"}]}");
+		assertEquals(serializer.toJson(edges.of(10, 1)), "{\"current\":1,\"first\":1,\"last\":4,\"totalPages\":10,"
+				+ "\"previous\":null,\"next\":\"/api/items?page=2\",\"previousSet\":null,\"nextSet\":\"/api/items?page=5\","
+				+ "\"lastPage\":{\"page\":10,\"url\":\"/api/items?page=10\"},"
+				+ "\"pages\":[{\"page\":1,\"url\":\"/api/items?page=1\"},{\"page\":2,\"url\":\"/api/items?page=2\"},"
+				+ "{\"page\":3,\"url\":\"/api/items?page=3\"},{\"page\":4,\"url\":\"/api/items?page=4\"}]}");
+	}
+
+	@Test
+	public void testJsonSameAsRenderer () {
+		PaginationRenderer renderer = new PaginationRenderer("/api/items?page={page}");
+		for (int page = 1; page <= 10; page++) {
+			Pagination pagination = factory.of(10, page);
+			assertEquals(serializer.toJson(pagination).getBytes(StandardCharsets.UTF_8), renderer.renderJson(pagination));
+		}
+	}
+
+	@Test
+	public void testWriteToByteBuffer () throws IOException {
+		PaginationSerializer unicode = new PaginationSerializer("/каталог/{page}?q=\"😀\"");
+		Pagination pagination = factory.of(10, 5);
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+		buffer.put((byte) '!');
+		int written = unicode.writeJson(pagination, buffer);
+		assertEquals(written, buffer.position() - 1);
+		assertEquals(new String(buffer.array(), 1, written, StandardCharsets.UTF_8), unicode.toJson(pagination));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(1024);
+		written = unicode.writeLinkHeader(pagination, direct);
+		byte[] bytes = new byte[written];
+		direct.flip();
+		direct.get(bytes);
+		assertEquals(new String(bytes, StandardCharsets.UTF_8), unicode.toLinkHeader(pagination));
+
+		// Appendable, который не является StringBuilder
+		StringBuffer out = new StringBuffer();
+		serializer.appendJson(factory.of(Integer.MAX_VALUE, Integer.MAX_VALUE), out);
+		assertTrue(out.toString().startsWith("{\"current\":2147483647,\"first\":2147483647,\"last\":2147483647,"));
+	}
+
+	@Test(expectedExceptions = java.nio.BufferOverflowException.class)
+	public void testBufferOverflow () {
+		serializer.writeJson(factory.of(10, 5), ByteBuffer.allocate(16));
+	}
+}
@@ -17,6 +17,14 @@ package com.artglorin.web.utils;
 
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.testng.Assert.*;
 
 /**
@@ -241,4 +249,337 @@ public class PaginationTest {
 		assertTrue(pagination.isExistPreviousSet());
 		assertTrue(pagination.isExistNextSet());
 	}
+
+	@Test(dependsOnGroups = "init")
+	public void testWindowSameAsSequentialSearch(){
+		for (int total = 0; total <= 40; total++) {
+			for (int listSize = 1; listSize <= 4; listSize++) {
+				for (int pagesInSet = 1; pagesInSet <= 5; pagesInSet++) {
+					for (int page = 1; page <= 12; page++) {
+						Pagination pagination = builder.setCurrentPageNumber(page).setItemsListSize(listSize).setTotalItemsCount(total).setPagesCountInSet(pagesInSet).build();
+						// Ожидаемые значения находятся последовательным перебором наборов
+						int totalPages = Math.max(1, (total + listSize - 1) / listSize);
+						int current = Math.min(page, totalPages);
+						int first = 1;
+						while (first + pagesInSet <= current) {
+							first += pagesInSet;
+						}
+						int last = Math.min(first + pagesInSet - 1, totalPages);
+						List<Integer> pages = new ArrayList<>();
+						for (int i = first; i <= last; i++) {
+							pages.add(i);
+						}
+						assertEquals(pagination.getCurrentPage(), current);
+						assertEquals(pagination.getFirstPageInSet(), first);
+						assertEquals(pagination.getLastPageInSet(), last);
+						assertEquals(pagination.getSetPages(), pages);
+						assertEquals(pagination.isExistPreviousSet(), current > pagesInSet);
+						assertEquals(pagination.isExistNextSet(), last < totalPages);
+					}
+				}
+			}
+		}
+	}
+
+	@Test(dependsOnGroups = "init")
+	public void testDeepPageOfHugeTotal(){
+		Pagination pagination = builder.setCurrentPageNumber(Integer.MAX_VALUE).setItemsListSize(1).setTotalItemsCount(Integer.MAX_VALUE).setPagesCountInSet(10).build();
+		assertEquals(pagination.getCurrentPage(), Integer.MAX_VALUE);
+		assertEquals(pagination.getFirstPageInSet(), 2147483641);
+		assertEquals(pagination.getLastPageInSet(), Integer.MAX_VALUE);
+		assertEquals(pagination.getPagesCountInSet(), 7);
+		assertTrue(pagination.isExistPreviousSet());
+		assertFalse(pagination.isExistNextSet());
+
+		PrimitiveIterator.OfInt iterator = pagination.getSetPagesIterator();
+		int count = 0;
+		while (iterator.hasNext()) {
+			assertEquals(iterator.nextInt(), 2147483641 + count++);
+		}
+		assertEquals(count, 7);
+
+		List<Integer> visited = new ArrayList<>();
+		pagination.forEachSetPage(visited::add);
+		assertEquals(visited, pagination.getSetPages());
+
+		pagination = builder.setCurrentPageNumber(Integer.MAX_VALUE - 5).setPagesCountInSet(Integer.MAX_VALUE - 1).build();
+		assertEquals(pagination.getFirstPageInSet(), 1);
+		assertEquals(pagination.getLastPageInSet(), Integer.MAX_VALUE - 1);
+		assertTrue(pagination.isExistNextSet());
+	}
+
+	@Test(dependsOnGroups = "init")
+	public void testSetPagesView(){
+		List<Integer> pages = builder.setCurrentPageNumber(25).setItemsListSize(1).setTotalItemsCount(100).setPagesCountInSet(10).build().getSetPages();
+		assertEquals(pages, Arrays.asList(21, 22, 23, 24, 25, 26, 27, 28, 29, 30));
+		assertEquals(pages.hashCode(), Arrays.asList(21, 22, 23, 24, 25, 26, 27, 28, 29, 30).hashCode());
+		assertTrue(pages.contains(30));
+		assertFalse(pages.contains(31));
+		assertEquals(pages.indexOf(23), 2);
+		assertEquals(pages.subList(1, 3), Arrays.asList(22, 23));
+		try {
+			pages.add(31);
+			fail("Pages view must be unmodifiable");
+		} catch (UnsupportedOperationException e) {
+			// ожидаемо
+		}
+		try {
+			pages.get(10);
+			fail("Index is out of bounds");
+		} catch (IndexOutOfBoundsException e) {
+			// ожидаемо
+		}
+	}
+
+	@Test
+	public void testProbingWithoutTotal(){
+		PaginationBuilder builder = PaginationBuilderImpl.getInstance().setItemsListSize(10).setPagesCountInSet(5);
+		builder.setTotalItemsCountAtLeast(0);
+		// На третьей странице выбрано 11 элементов: есть хотя бы четвертая страница
+		Pagination pagination = builder.setCurrentPageNumber(3).setFetchedItemsCount(11).build();
+		assertFalse(pagination.isTotalItemsCountExact());
+		assertEquals(pagination.getCurrentPage(), 3);
+		assertEquals(pagination.getLastPageInSet(), 4);
+		assertFalse(pagination.isExistNextSet());
+
+		// На пятой странице тоже есть продолжение, набор полный и следующий набор возможен
+		pagination = builder.setCurrentPageNumber(5).setFetchedItemsCount(11).build();
+		assertEquals(pagination.getLastPageInSet(), 5);
+		assertTrue(pagination.isExistNextSet());
+
+		// На седьмой странице выбрано 4 элемента: она последняя, количество известно точно
+		pagination = builder.setCurrentPageNumber(7).setFetchedItemsCount(4).build();
+		assertTrue(pagination.isTotalItemsCountExact());
+		assertEquals(pagination.getFirstPageInSet(), 6);
+		assertEquals(pagination.getLastPageInSet(), 7);
+		assertFalse(pagination.isExistNextSet());
+
+		// Без выборки используется только оценка снизу, а текущая страница не уменьшается
+		pagination = builder.setTotalItemsCountAtLeast(25).setCurrentPageNumber(9).build();
+		assertFalse(pagination.isTotalItemsCountExact());
+		assertEquals(pagination.getCurrentPage(), 9);
+		assertEquals(pagination.getLastPageInSet(), 9);
+	}
+
+	@Test
+	public void testFutureTotal(){
+		CompletableFuture<Integer> count = new CompletableFuture<>();
+		PaginationBuilder builder = PaginationBuilderImpl.getInstance().setItemsListSize(10).setPagesCountInSet(5).setTotalItemsCount(count);
+		Pagination pagination = builder.setCurrentPageNumber(2).setFetchedItemsCount(11).build();
+		assertFalse(pagination.isTotalItemsCountExact());
+		assertEquals(pagination.getLastPageInSet(), 3);
+
+		count.complete(1000);
+		pagination = builder.setCurrentPageNumber(2).build();
+		assertTrue(pagination.isTotalItemsCountExact());
+		assertEquals(pagination.getLastPageInSet(), 5);
+		assertTrue(pagination.isExistNextSet());
+
+		// Точное количество отменяет асинхронное
+		pagination = builder.setTotalItemsCount(15).build();
+		assertEquals(pagination.getLastPageInSet(), 2);
+		assertFalse(pagination.isExistNextSet());
+	}
+
+	@Test
+	public void testSupplierTotal(){
+		AtomicInteger calls = new AtomicInteger();
+		PaginationBuilder builder = PaginationBuilderImpl.getInstance().setItemsListSize(10).setPagesCountInSet(5)
+				.setTotalItemsCount(() -> {
+					calls.incrementAndGet();
+					return 1000;
+				});
+		// Короткая выборка делает количество точным без подсчета
+		Pagination pagination = builder.setCurrentPageNumber(3).setFetchedItemsCount(4).build();
+		assertTrue(pagination.isTotalItemsCountExact());
+		assertEquals(pagination.getTotalPages(), 3);
+		assertEquals(calls.get(), 0);
+
+		pagination = builder.setCurrentPageNumber(2).setFetchedItemsCount(11).build();
+		assertTrue(pagination.isTotalItemsCountExact());
+		assertEquals(pagination.getTotalPages(), 100);
+		assertEquals(calls.get(), 1);
+		// Результат запоминается
+		builder.setCurrentPageNumber(7).build();
+		assertEquals(builder.build().getTotalPages(), 100);
+		assertEquals(calls.get(), 1);
+
+		try {
+			PaginationBuilderImpl.getInstance().setTotalItemsCount(() -> null).build();
+			fail();
+		} catch (IllegalStateException ignored) {
+		}
+	}
+
+	@Test
+	public void testFactorySameAsBuilder(){
+		PaginationFactory factory = new PaginationFactory(3, 4);
+		for (int total = -1; total <= 30; total++) {
+			for (int page = -1; page <= 12; page++) {
+				Pagination expected = PaginationBuilderImpl.getInstance().setItemsListSize(3).setPagesCountInSet(4).setTotalItemsCount(total).setCurrentPageNumber(page).build();
+				Pagination pagination = factory.of(total, page);
+				assertEquals(pagination.getCurrentPage(), expected.getCurrentPage());
+				assertEquals(pagination.getSetPages(), expected.getSetPages());
+				assertEquals(pagination.isExistPreviousSet(), expected.isExistPreviousSet());
+				assertEquals(pagination.isExistNextSet(), expected.isExistNextSet());
+			}
+		}
+		assertEquals(factory.of(100, 2, 50).getLastPageInSet(), 2);
+		assertEquals(factory.ofLong(5_000_000_000L, 2).getOffset(), 3);
+		assertEquals(new PaginationFactory(0, -1).getItemsListSize(), 1);
+		assertEquals(new PaginationFactory().getPagesCountInSet(), PaginationBuilder.DEFAULT_SHOWED_PAGES_COUNT);
+	}
+
+	@Test
+	public void testFactorySharedBetweenThreads() throws InterruptedException, ExecutionException {
+		PaginationFactory factory = new PaginationFactory(10, 10);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int thread = 0; thread < 4; thread++) {
+				int offset = thread;
+				results.add(executor.submit(() -> {
+					for (int page = 1; page <= 10000; page++) {
+						Pagination pagination = factory.of(1_000_000, page + offset);
+						if (pagination.getCurrentPage() != page + offset) {
+							return false;
+						}
+					}
+					return true;
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertTrue(result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testFactoryCache(){
+		PaginationFactory plain = new PaginationFactory(10, 5);
+		assertNotSame(plain.of(100, 2), plain.of(100, 2));
+		assertEquals(plain.getCacheHitRate(), 0.0);
+
+		PaginationFactory factory = plain.withCache(100);
+		Pagination first = factory.of(100, 2);
+		assertSame(factory.of(100, 2), first);
+		assertSame(factory.of(100, -5), factory.of(100, 1));
+		assertNotSame(factory.of(100, 2, 20), first);
+		assertEquals(factory.getCacheHits(), 2);
+		assertEquals(factory.getCacheMisses(), 3);
+		assertEquals(factory.getCacheHitRate(), 0.4, 1e-9);
+
+		// Вытеснение не влияет на правильность результата
+		PaginationFactory tiny = plain.withCache(1);
+		for (int page = 1; page <= 10; page++) {
+			assertEquals(tiny.of(1000, page).getCurrentPage(), page);
+			assertEquals(tiny.of(1000, page).getCurrentPage(), page);
+		}
+		assertEquals(tiny.getCacheHits(), 10);
+	}
+
+	@Test
+	public void testCenteredWindow(){
+		PaginationFactory factory = new PaginationFactory(1, 5, PageWindowStrategy.CENTERED);
+		Pagination pagination = factory.of(50, 9);
+		assertEquals(pagination.getSetPages(), Arrays.asList(7, 8, 9, 10, 11));
+		assertTrue(pagination.isExistPreviousSet());
+		assertTrue(pagination.isExistNextSet());
+		assertEquals(pagination.getTotalPages(), 50);
+
+		assertEquals(factory.of(50, 2).getSetPages(), Arrays.asList(1, 2, 3, 4, 5));
+		assertFalse(factory.of(50, 2).isExistPreviousSet());
+		assertEquals(factory.of(50, 49).getSetPages(), Arrays.asList(46, 47, 48, 49, 50));
+		assertFalse(factory.of(50, 49).isExistNextSet());
+		assertEquals(factory.of(3, 2).getSetPages(), Arrays.asList(1, 2, 3));
+		assertEquals(factory.of(Integer.MAX_VALUE, Integer.MAX_VALUE).getLastPageInSet(), Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void testEdgesWindow(){
+		Pagination pagination = PaginationBuilderImpl.getInstance()
+				.setPageWindowStrategy(PageWindowStrategy.EDGES)
+				.setItemsListSize(1)
+				.setPagesCountInSet(7)
+				.setTotalItemsCount(50)
+				.setCurrentPageNumber(9)
+				.build();
+		// 1 ... 7 8 [9] 10 11 ... 50
+		assertEquals(pagination.getSetPages(), Arrays.asList(7, 8, 9, 10, 11));
+		assertTrue(pagination.isExistPreviousSet());
+		assertTrue(pagination.isExistNextSet());
+		assertTrue(pagination.isShowFirstPage());
+		assertTrue(pagination.isShowLastPage());
+
+		PaginationFactory factory = new PaginationFactory(1, 7, PageWindowStrategy.EDGES);
+		// [1] 2 3 4 5 6 ... 50
+		pagination = factory.of(50, 1);
+		assertEquals(pagination.getSetPages(), Arrays.asList(1, 2, 3, 4, 5, 6));
+		assertFalse(pagination.isExistPreviousSet());
+		assertFalse(pagination.isShowFirstPage());
+		assertTrue(pagination.isShowLastPage());
+		// 1 [2] 3 4 5 6 ... 50
+		assertEquals(factory.of(50, 2).getSetPages(), Arrays.asList(1, 2, 3, 4, 5, 6));
+		assertEquals(factory.of(50, 4).getSetPages(), Arrays.asList(1, 2, 3, 4, 5, 6));
+		// 1 ... 3 4 [5] 6 7 ... 50
+		assertEquals(factory.of(50, 5).getSetPages(), Arrays.asList(3, 4, 5, 6, 7));
+		// 1 ... 45 46 47 48 [49] 50
+		pagination = factory.of(50, 49);
+		assertEquals(pagination.getSetPages(), Arrays.asList(45, 46, 47, 48, 49, 50));
+		assertFalse(pagination.isExistNextSet());
+		assertTrue(pagination.isShowFirstPage());
+		assertFalse(pagination.isShowLastPage());
+		assertEquals(factory.of(50, 50).getSetPages(), Arrays.asList(45, 46, 47, 48, 49, 50));
+		// Все страницы помещаются в набор
+		assertEquals(factory.of(7, 4).getSetPages(), Arrays.asList(1, 2, 3, 4, 5, 6, 7));
+		assertFalse(factory.of(7, 4).isExistNextSet());
+		assertFalse(factory.of(7, 4).isShowLastPage());
+		assertEquals(factory.of(8, 1).getSetPages(), Arrays.asList(1, 2, 3, 4, 5, 6));
+		// Набор не длиннее pagesInSet и при одной или двух страницах в наборе
+		factory = new PaginationFactory(1, 1, PageWindowStrategy.EDGES);
+		// [1] ... 50
+		pagination = factory.of(50, 1);
+		assertEquals(pagination.getSetPages(), Collections.singletonList(1));
+		assertFalse(pagination.isShowFirstPage());
+		assertTrue(pagination.isShowLastPage());
+		// 1 [2] ... 50
+		pagination = factory.of(50, 2);
+		assertEquals(pagination.getSetPages(), Collections.singletonList(2));
+		assertTrue(pagination.isShowFirstPage());
+		assertTrue(pagination.isShowLastPage());
+		// 1 ... [50]
+		pagination = factory.of(50, 50);
+		assertEquals(pagination.getSetPages(), Collections.singletonList(50));
+		assertTrue(pagination.isShowFirstPage());
+		assertFalse(pagination.isShowLastPage());
+		factory = new PaginationFactory(1, 2, PageWindowStrategy.EDGES);
+		// [1] 2 ... 50
+		assertEquals(factory.of(50, 1).getSetPages(), Arrays.asList(1, 2));
+		assertEquals(factory.of(50, 2).getSetPages(), Arrays.asList(1, 2));
+		// 1 ... [9] ... 50
+		assertEquals(factory.of(50, 9).getSetPages(), Collections.singletonList(9));
+		// 1 ... 49 [50]
+		assertEquals(factory.of(50, 49).getSetPages(), Arrays.asList(49, 50));
+		assertEquals(factory.of(50, 50).getSetPages(), Arrays.asList(49, 50));
+
+		// Текущая страница всегда в наборе
+		for (int pagesInSet = 1; pagesInSet <= 9; pagesInSet++) {
+			factory = new PaginationFactory(1, pagesInSet, PageWindowStrategy.EDGES);
+			for (int total = 1; total <= 30; total++) {
+				for (int current = 1; current <= total; current++) {
+					pagination = factory.of(total, current);
+					assertTrue(pagination.getFirstPageInSet() <= current && current <= pagination.getLastPageInSet());
+					assertTrue(pagination.getLastPageInSet() - pagination.getFirstPageInSet() < pagesInSet);
+					assertEquals(pagination.isExistPreviousSet(), pagination.getFirstPageInSet() > 1);
+					assertEquals(pagination.isShowLastPage(), pagination.getLastPageInSet() < total);
+				}
+			}
+		}
+		pagination = new PaginationFactory(1, 7, PageWindowStrategy.EDGES).of(Integer.MAX_VALUE, Integer.MAX_VALUE - 1);
+		assertEquals(pagination.getLastPageInSet(), Integer.MAX_VALUE);
+		assertFalse(pagination.isShowLastPage());
+		assertFalse(new PaginationFactory(1, 5).of(50, 9).isShowFirstPage());
+	}
 }
@@ -16,15 +16,27 @@
 package com.artglorin.web.utils;
 
 import org.apache.commons.io.FileUtils;
+import org.testng.SkipException;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import javax.servlet.ServletContext;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -98,4 +110,156 @@ public class ResourcesHelperTest {
 		assertTrue(Files.exists(Paths.get(testFolder.toString(), "datsa")));
 	}
 
+	@Test(dependsOnMethods = "testSaveDataToServer")
+	public void testOverwriteData () throws IOException {
+		resourcesHelper.saveData("SOME LONG DATA".getBytes(), "overwrite", "file.txt");
+		resourcesHelper.saveData("SHORT".getBytes(), "overwrite", "file.txt");
+		assertEquals(Files.readAllBytes(Paths.get(testFolder.toString(), "overwrite", "file.txt")), "SHORT".getBytes());
+	}
+
+	@Test(dependsOnMethods = "testSaveDataToServer")
+	public void testAtomicWrites () throws IOException {
+		ServletContext servletContext = mock(ServletContext.class);
+		when(servletContext.getRealPath(pathToResources)).thenAnswer(answer -> testFolder.toAbsolutePath().toString());
+		ResourcesHelper atomic = new ResourcesHelper(pathToResources, servletContext).setAtomicWrites(true).setSyncWrites(true);
+		assertTrue(atomic.isAtomicWrites());
+		assertTrue(atomic.isSyncWrites());
+		Path file = Paths.get(testFolder.toString(), "atomic", "file.txt");
+
+		atomic.saveData("OLD DATA".getBytes(), "atomic", "file.txt");
+		assertEquals(Files.readAllBytes(file), "OLD DATA".getBytes());
+
+		try (ResourcesHelper.Output output = atomic.openOutput("atomic", "file.txt")) {
+			output.getChannel().write(ByteBuffer.wrap("NEW".getBytes()));
+			// До завершения записи файл содержит прежние данные
+			assertEquals(Files.readAllBytes(file), "OLD DATA".getBytes());
+			assertEquals(output.getPath(), file);
+		}
+		assertEquals(Files.readAllBytes(file), "OLD DATA".getBytes());
+
+		atomic.saveData("NEW DATA".getBytes(), "atomic", "file.txt");
+		assertEquals(Files.readAllBytes(file), "NEW DATA".getBytes());
+		// Временные файлы не остаются в папке
+		assertEquals(file.getParent().toFile().list(), new String[]{"file.txt"});
+	}
+
+	@Test(dependsOnMethods = "testSaveDataToServer")
+	public void testSaveStreams () throws IOException {
+		byte[] data = new byte[300_000];
+		new Random(42).nextBytes(data);
+		Path file = Paths.get(testFolder.toString(), "streams", "file.bin");
+
+		assertEquals(resourcesHelper.saveData(new ByteArrayInputStream(data), "streams", "file.bin"), data.length);
+		assertEquals(Files.readAllBytes(file), data);
+
+		assertEquals(resourcesHelper.saveData(Channels.newChannel(new ByteArrayInputStream(data, 1, data.length - 1)), "streams", "channel.bin"),
+				data.length - 1);
+		assertEquals(Files.size(Paths.get(testFolder.toString(), "streams", "channel.bin")), data.length - 1);
+
+		try (InputStream in = new FileInputStream(file.toFile())) {
+			assertEquals(in.skip(10), 10);
+			assertEquals(resourcesHelper.saveData(in, "streams", "copy.bin"), data.length - 10);
+		}
+		assertEquals(Files.size(Paths.get(testFolder.toString(), "streams", "copy.bin")), data.length - 10);
+
+		try (FileChannel channel = FileChannel.open(file)) {
+			assertEquals(resourcesHelper.saveData(channel, "streams", "transfer.bin"), data.length);
+		}
+		assertEquals(Files.readAllBytes(Paths.get(testFolder.toString(), "streams", "transfer.bin")), data);
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+		direct.put(data).flip();
+		direct.position(100);
+		assertEquals(resourcesHelper.saveData(direct, "streams", "direct.bin"), data.length - 100);
+		assertFalse(direct.hasRemaining());
+		assertEquals(Files.size(Paths.get(testFolder.toString(), "streams", "direct.bin")), data.length - 100);
+	}
+
+	@Test(dependsOnMethods = "testSaveDataToServer")
+	public void testSaveFromPipe () throws IOException, InterruptedException, ExecutionException {
+		Path fifo = Paths.get(testFolder.toString(), "data.fifo");
+		try {
+			if (new ProcessBuilder("mkfifo", fifo.toString()).start().waitFor() != 0) {
+				throw new SkipException("mkfifo failed");
+			}
+		} catch (IOException e) {
+			throw new SkipException("mkfifo is not available", e);
+		}
+		byte[] data = new byte[200_000];
+		new Random(7).nextBytes(data);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> writer = executor.submit(() -> Files.write(fifo, data));
+			try (InputStream in = new FileInputStream(fifo.toFile())) {
+				assertEquals(resourcesHelper.saveData(in, "pipe", "stream.bin"), data.length);
+			}
+			writer.get();
+			assertEquals(Files.readAllBytes(Paths.get(testFolder.toString(), "pipe", "stream.bin")), data);
+
+			writer = executor.submit(() -> Files.write(fifo, data));
+			try (FileChannel channel = FileChannel.open(fifo)) {
+				assertEquals(resourcesHelper.saveData(channel, "pipe", "channel.bin"), data.length);
+			}
+			writer.get();
+			assertEquals(Files.readAllBytes(Paths.get(testFolder.toString(), "pipe", "channel.bin")), data);
+		} finally {
+			executor.shutdownNow();
+			Files.deleteIfExists(fifo);
+		}
+	}
+
+	@Test(dependsOnMethods = "testSaveDataToServer")
+	public void testKnownDirectories () throws IOException {
+		ServletContext servletContext = mock(ServletContext.class);
+		when(servletContext.getRealPath(pathToResources)).thenAnswer(answer -> testFolder.toAbsolutePath().toString());
+		ResourcesHelper helper = new ResourcesHelper(pathToResources, servletContext);
+		for (int i = 0; i < 3; i++) {
+			helper.saveData("DATA".getBytes(), "known", "folder", i + ".txt");
+		}
+		assertEquals(helper.getAvoidedDirectoryChecks(), 2);
+
+		helper.deleteResourcesDirectory("known");
+		helper.saveData("DATA".getBytes(), "known", "folder", "0.txt");
+		assertEquals(helper.getAvoidedDirectoryChecks(), 2);
+		assertTrue(Files.exists(Paths.get(testFolder.toString(), "known", "folder", "0.txt")));
+
+		// Папку удалили в обход ResourcesHelper, она будет создана заново
+		FileUtils.deleteDirectory(Paths.get(testFolder.toString(), "known").toFile());
+		helper.saveData("DATA".getBytes(), "known", "folder", "1.txt");
+		assertTrue(Files.exists(Paths.get(testFolder.toString(), "known", "folder", "1.txt")));
+		helper.setAtomicWrites(true);
+		FileUtils.deleteDirectory(Paths.get(testFolder.toString(), "known").toFile());
+		helper.saveData("DATA".getBytes(), "known", "folder", "2.txt");
+		assertTrue(Files.exists(Paths.get(testFolder.toString(), "known", "folder", "2.txt")));
+	}
+
+	@Test(dependsOnMethods = "testSaveDataToServer")
+	public void testContentStorage () throws IOException {
+		ServletContext servletContext = mock(ServletContext.class);
+		when(servletContext.getRealPath(pathToResources)).thenAnswer(answer -> testFolder.toAbsolutePath().toString());
+		ResourcesHelper helper = new ResourcesHelper(pathToResources, servletContext).setContentDirectory("cas");
+		byte[] data = "SOME CONTENT".getBytes();
+		String hash = Digests.toHex(Digests.sha256().digest(data));
+
+		String path = helper.saveContent(data, "txt");
+		assertEquals(path, "cas/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ".txt");
+		assertEquals(Files.readAllBytes(Paths.get(testFolder.toString(), path)), data);
+		assertEquals(helper.getDeduplicatedContentCount(), 0);
+
+		assertEquals(helper.saveContent(data, "txt"), path);
+		assertEquals(helper.saveContent(new ByteArrayInputStream(data), "txt"), path);
+		assertEquals(helper.getDeduplicatedContentCount(), 2);
+		assertEquals(helper.saveContent(data, null), path.substring(0, path.length() - ".txt".length()));
+
+		byte[] other = new byte[200_000];
+		new Random(42).nextBytes(other);
+		String otherPath = helper.saveContent(new ByteArrayInputStream(other), "bin");
+		assertNotEquals(otherPath, path);
+		assertEquals(helper.saveContent(other, "bin"), otherPath);
+		assertEquals(Files.readAllBytes(Paths.get(testFolder.toString(), otherPath)), other);
+		// Временные файлы не остаются в хранилище
+		for (String name : Paths.get(testFolder.toString(), "cas").toFile().list()) {
+			assertEquals(name.length(), 2);
+		}
+	}
 }
@@ -16,18 +16,38 @@
 package com.artglorin.web.utils;
 
 import com.artglorin.web.utils.exceptions.*;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import javax.servlet.ServletContext;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.testng.Assert.assertEquals;
-import static org.testng.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
 
 /**
  * @author Verminsky V.V. e-mail: develop@artglorin.com
@@ -38,9 +58,84 @@ public class XmlByteExtractorTest {
 
 	private Document document;
 
+	private HttpServer server;
+
+	private ExecutorService serverExecutor;
+
+	private String serverUrl;
+
+	private final AtomicInteger activeRequests = new AtomicInteger();
+
+	private final AtomicInteger maxActiveRequests = new AtomicInteger();
+
 	@BeforeClass
-	public void init () {
+	public void init () throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		// /image?id=1&delay=50 отдает изображение "image-1" с задержкой
+		server.createContext("/image", exchange -> {
+			int active = activeRequests.incrementAndGet();
+			maxActiveRequests.accumulateAndGet(active, Math::max);
+			try {
+				Map<String, String> query = new HashMap<>();
+				for (String pair : exchange.getRequestURI().getQuery().split("&")) {
+					query.put(pair.substring(0, pair.indexOf('=')), pair.substring(pair.indexOf('=') + 1));
+				}
+				Thread.sleep(Long.parseLong(query.getOrDefault("delay", "0")));
+				byte[] body = ("image-" + query.get("id")).getBytes();
+				exchange.getResponseHeaders().set("Content-Type", "image/png");
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				activeRequests.decrementAndGet();
+				exchange.close();
+			}
+		});
+		// /blob?size=1000&chunked=true отдает изображение указанного размера, с заголовком Content-Length или без
+		server.createContext("/blob", exchange -> {
+			String query = exchange.getRequestURI().getQuery();
+			int size = Integer.parseInt(query.replaceAll(".*size=(\\d+).*", "$1"));
+			exchange.getResponseHeaders().set("Content-Type", "image/jpeg");
+			exchange.sendResponseHeaders(200, query.contains("chunked=true") ? 0 : size);
+			exchange.getResponseBody().write(new byte[size]);
+			exchange.close();
+		});
+		// /typed?type=image/png отдает данные с указанным заголовком Content-Type
+		server.createContext("/typed", exchange -> {
+			byte[] body = "typed".getBytes();
+			exchange.getResponseHeaders().set("Content-Type", URLDecoder.decode(exchange.getRequestURI().getRawQuery().substring("type=".length()), "UTF-8"));
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.createContext("/slow", exchange -> {
+			try {
+				Thread.sleep(1000);
+				exchange.sendResponseHeaders(204, -1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				exchange.close();
+			}
+		});
+		server.createContext("/page", exchange -> {
+			byte[] body = "<html></html>".getBytes();
+			exchange.getResponseHeaders().set("Content-Type", "text/html");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.start();
+		serverUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+	}
 
+	@AfterClass
+	public void stopServer () {
+		server.stop(0);
+		serverExecutor.shutdownNow();
 	}
 
 	@Test(expectedExceptions = DecodeException.class)
@@ -171,6 +266,565 @@ public class XmlByteExtractorTest {
 		assertEquals(description.getData(), data);
 	}
 
+	@Test
+	public void testHandlerReceivesEachDescription () throws ExtractionException {
+		Element root = newDocument();
+
+		String dataString = "data:image/png;base64," + Base64.getEncoder().encodeToString("String".getBytes());
+		for (int i = 0; i < 3; i++) {
+			Element img = document.createElement("img");
+			img.setAttribute("src", dataString);
+			root.appendChild(img);
+		}
+		Element audio = document.createElement("audio");
+		audio.setAttribute("src", "data:audio/wav;base64," + Base64.getEncoder().encodeToString("Audio".getBytes()));
+		root.appendChild(audio);
+
+		XmlByteExtractor extractor = new XmlByteExtractor(document);
+		List<XmlByteExtractor.Description> handled = new ArrayList<>();
+		extractor.extractImage(handled::add);
+		assertEquals(handled.size(), 3);
+		assertEquals(handled.get(2).getNode(), root.getChildNodes().item(2));
+		assertEquals(handled.get(2).getData(), "String".getBytes());
+
+		handled.clear();
+		extractor.extractAll(handled::add);
+		assertEquals(handled.size(), 4);
+		assertEquals(handled.get(3).getType(), "audio");
+		assertEquals(handled.get(3).getData(), "Audio".getBytes());
+	}
+
+	@Test
+	public void testExtractInDocumentOrder () throws ExtractionException {
+		Element root = newDocument();
+
+		Element video = document.createElement("video");
+		video.setAttribute("src", "data:video/mp4;base64," + Base64.getEncoder().encodeToString("Video".getBytes()));
+		root.appendChild(video);
+		Element paragraph = document.createElement("p");
+		root.appendChild(paragraph);
+		Element img = document.createElement("img");
+		img.setAttribute("src", "data:image/png;base64," + Base64.getEncoder().encodeToString("Image".getBytes()));
+		paragraph.appendChild(img);
+		Element object = document.createElement("object");
+		object.setAttribute("data", "data:application/pdf;base64," + Base64.getEncoder().encodeToString("Pdf".getBytes()));
+		paragraph.appendChild(object);
+		Element audio = document.createElement("audio");
+		audio.setAttribute("src", "data:audio/wav;base64," + Base64.getEncoder().encodeToString("Audio".getBytes()));
+		root.appendChild(audio);
+
+		XmlByteExtractor extractor = new XmlByteExtractor(document);
+		List<XmlByteExtractor.Description> result = extractor.extractAll();
+		assertEquals(result.size(), 3);
+		assertEquals(result.get(0).getNode(), video);
+		assertEquals(result.get(1).getNode(), img);
+		assertEquals(result.get(2).getNode(), audio);
+
+		Map<String, String> sources = new HashMap<>();
+		sources.put("img", "src");
+		sources.put("object", "data");
+		result = extractor.extract(sources);
+		assertEquals(result.size(), 2);
+		assertEquals(result.get(0).getNode(), img);
+		assertEquals(result.get(1).getNode(), object);
+		assertEquals(result.get(1).getType(), "application");
+		assertEquals(result.get(1).getExtension(), "pdf");
+	}
+
+	@Test(expectedExceptions = ExtractionException.class, expectedExceptionsMessageRegExp = "Stop")
+	public void testHandlerStopsExtraction () throws ExtractionException {
+		Element root = newDocument();
+
+		Element img = document.createElement("img");
+		img.setAttribute("src", "data:image/png;base64," + Base64.getEncoder().encodeToString("String".getBytes()));
+		root.appendChild(img);
+		Element broken = document.createElement("img");
+		broken.setAttribute("src", "data:image/png;base64,iiVBORw0K");
+		root.appendChild(broken);
+
+		XmlByteExtractor extractor = new XmlByteExtractor(document);
+		extractor.extractImage(description -> {
+			throw new ExtractionException("Stop");
+		});
+	}
+
+	@Test
+	public void testConcurrentFetchKeepsDocumentOrder () throws ExtractionException {
+		Element root = newDocument();
+		for (int i = 0; i < 12; i++) {
+			Element img = document.createElement("img");
+			if (i % 3 == 2) {
+				img.setAttribute("src", "data:image/png;base64," + Base64.getEncoder().encodeToString(("image-" + i).getBytes()));
+			} else {
+				// Первые изображения отвечают дольше последних
+				img.setAttribute("src", serverUrl + "/image?id=" + i + "&delay=" + (12 - i) * 10);
+			}
+			root.appendChild(img);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			maxActiveRequests.set(0);
+			XmlByteExtractor extractor = new XmlByteExtractor(document).setConcurrentFetch(executor, 6, 3);
+			List<XmlByteExtractor.Description> result = extractor.extractImage();
+			assertEquals(result.size(), 12);
+			for (int i = 0; i < 12; i++) {
+				assertEquals(result.get(i).getNode(), root.getChildNodes().item(i));
+				assertEquals(result.get(i).getData(), ("image-" + i).getBytes());
+				assertEquals(result.get(i).getType(), "image");
+				assertEquals(result.get(i).getExtension(), "png");
+			}
+			assertTrue(maxActiveRequests.get() > 1);
+			assertTrue(maxActiveRequests.get() <= 3);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test(expectedExceptions = InvalidTypeException.class)
+	public void testConcurrentFetchThrowsFirstErrorInDocumentOrder () throws ExtractionException {
+		Element root = newDocument();
+		Element img = document.createElement("img");
+		img.setAttribute("src", serverUrl + "/image?id=1&delay=100");
+		root.appendChild(img);
+		img = document.createElement("img");
+		img.setAttribute("src", serverUrl + "/page");
+		root.appendChild(img);
+		img = document.createElement("img");
+		img.setAttribute("src", "data:image/png;base64,iiVBORw0K");
+		root.appendChild(img);
+
+		new XmlByteExtractor(document).setConcurrentFetch(4, 4).extractImage();
+	}
+
+	@Test
+	public void testSequentialFetchFromUrl () throws ExtractionException {
+		Element root = newDocument();
+		Element img = document.createElement("img");
+		img.setAttribute("src", serverUrl + "/image?id=7");
+		root.appendChild(img);
+
+		List<XmlByteExtractor.Description> result = new XmlByteExtractor(document).extractImage();
+		assertEquals(result.size(), 1);
+		assertEquals(result.get(0).getData(), "image-7".getBytes());
+	}
+
+	@Test
+	public void testFetchPolicyAllowsSizesWithinLimits () throws ExtractionException {
+		Element root = newDocument();
+		Element img = document.createElement("img");
+		img.setAttribute("src", serverUrl + "/blob?size=100");
+		root.appendChild(img);
+		img = document.createElement("img");
+		img.setAttribute("src", serverUrl + "/blob?size=20000&chunked=true");
+		root.appendChild(img);
+
+		XmlByteExtractor extractor = new XmlByteExtractor(document)
+				.setFetchPolicy(new FetchPolicy().setMaxBytesPerAsset(20000).setMaxBytesPerDocument(20100));
+		List<XmlByteExtractor.Description> result = extractor.extractImage();
+		assertEquals(result.get(0).getData().length, 100);
+		assertEquals(result.get(1).getData().length, 20000);
+		assertEquals(result.get(1).getExtension(), "jpeg");
+	}
+
+	@Test
+	public void testFetchPolicyReadsContentLongerThanInitialBuffer () throws ExtractionException {
+		assertEquals(new FetchPolicy().getMaxBytesPerAsset(), Long.MAX_VALUE);
+		Element root = newDocument();
+		Element img = document.createElement("img");
+		img.setAttribute("src", serverUrl + "/blob?size=3000000");
+		root.appendChild(img);
+
+		assertEquals(new XmlByteExtractor(document).extractImage().get(0).getData().length, 3000000);
+	}
+
+	@Test(expectedExceptions = SizeLimitExceededException.class)
+	public void testFetchPolicyChecksContentLength () throws ExtractionException {
+		Element root = newDocument();
+		Element img = document.createElement("img");
+		img.setAttribute("src", serverUrl + "/blob?size=1000");
+		root.appendChild(img);
+
+		new XmlByteExtractor(document).setFetchPolicy(new FetchPolicy().setMaxBytesPerAsset(999)).extractImage();
+	}
+
+	@Test(expectedExceptions = SizeLimitExceededException.class)
+	public void testFetchPolicyLimitsStreamWithoutContentLength () throws ExtractionException {
+		Element root = newDocument();
+		Element img = document.createElement("img");
+		img.setAttribute("src", serverUrl + "/blob?size=100000&chunked=true");
+		root.appendChild(img);
+
+		new XmlByteExtractor(document).setFetchPolicy(new FetchPolicy().setMaxBytesPerAsset(1000)).extractImage();
+	}
+
+	@Test(expectedExceptions = SizeLimitExceededException.class)
+	public void testFetchPolicyLimitsDocument () throws ExtractionException {
+		Element root = newDocument();
+		for (int i = 0; i < 3; i++) {
+			Element img = document.createElement("img");
+			img.setAttribute("src", serverUrl + "/blob?size=60" + (i % 2 == 0 ? "&chunked=true" : ""));
+			root.appendChild(img);
+		}
+
+		new XmlByteExtractor(document).setFetchPolicy(new FetchPolicy().setMaxBytesPerDocument(150)).extractImage();
+	}
+
+	@Test(expectedExceptions = FetchTimeoutException.class)
+	public void testFetchPolicyReadTimeout () throws ExtractionException {
+		Element root = newDocument();
+		Element img = document.createElement("img");
+		img.setAttribute("src", serverUrl + "/slow");
+		root.appendChild(img);
+
+		new XmlByteExtractor(document).setFetchPolicy(new FetchPolicy().setReadTimeout(100)).extractImage();
+	}
+
+	@Test
+	public void testDeduplicateDataWithinAndAcrossDocuments () throws ExtractionException {
+		String logo = "data:image/png;base64," + Base64.getEncoder().encodeToString("Logo".getBytes());
+		DataUriDeduplicator deduplicator = new DataUriDeduplicator();
+
+		Element root = newDocument();
+		for (int i = 0; i < 3; i++) {
+			Element img = document.createElement("img");
+			img.setAttribute("src", logo);
+			root.appendChild(img);
+		}
+		Element other = document.createElement("img");
+		other.setAttribute("src", "data:image/png;base64," + Base64.getEncoder().encodeToString("Other".getBytes()));
+		root.appendChild(other);
+
+		List<XmlByteExtractor.Description> result = new XmlByteExtractor(document).setDeduplicator(deduplicator).extractImage();
+		assertFalse(result.get(0).isShared());
+		assertEquals(result.get(0).getData(), "Logo".getBytes());
+		assertSame(result.get(1).getOriginal(), result.get(0));
+		assertSame(result.get(1).getData(), result.get(0).getData());
+		assertSame(result.get(2).getData(), result.get(0).getData());
+		assertEquals(result.get(2).getNode(), root.getChildNodes().item(2));
+		assertFalse(result.get(3).isShared());
+		assertEquals(deduplicator.getSharedCount(), 2);
+
+		root = newDocument();
+		Element img = document.createElement("img");
+		img.setAttribute("src", logo);
+		root.appendChild(img);
+		List<XmlByteExtractor.Description> next = new XmlByteExtractor(document).setDeduplicator(deduplicator).extractImage();
+		assertSame(next.get(0).getOriginal(), result.get(0));
+		assertEquals(next.get(0).getNode(), img);
+		assertEquals(deduplicator.getSharedCount(), 3);
+		assertEquals(deduplicator.getSharedBytes(), 12);
+	}
+
+	@Test
+	public void testDeduplicatorLimits () throws ExtractionException {
+		Element root = newDocument();
+		for (String value : new String[]{"Logo", "Other", "Logo", "Third", "Logo", "Other"}) {
+			Element img = document.createElement("img");
+			img.setAttribute("src", "data:image/png;base64," + Base64.getEncoder().encodeToString(value.getBytes()));
+			root.appendChild(img);
+		}
+		// Запоминаются две записи, повторно использованная запись вытесняется последней
+		DataUriDeduplicator byEntries = new DataUriDeduplicator(DataUriDeduplicator.Mode.ENCODED, 2);
+		List<XmlByteExtractor.Description> result = new XmlByteExtractor(document).setDeduplicator(byEntries).extractImage();
+		assertTrue(result.get(2).isShared());
+		assertTrue(result.get(4).isShared());
+		assertFalse(result.get(5).isShared());
+
+		// Не больше 8 байт: "Other" вытесняет "Logo"
+		DataUriDeduplicator byBytes = new DataUriDeduplicator(DataUriDeduplicator.Mode.ENCODED, 100, 8);
+		result = new XmlByteExtractor(document).setDeduplicator(byBytes).extractImage();
+		assertFalse(result.get(2).isShared());
+		assertTrue(byBytes.getRetainedBytes() <= 8);
+		assertEquals(result.get(2).getData(), "Logo".getBytes());
+	}
+
+	@Test
+	public void testDeduplicateDecodedData () throws ExtractionException {
+		Element root = newDocument();
+		Element padded = document.createElement("img");
+		padded.setAttribute("src", "data:image/png;base64," + Base64.getEncoder().encodeToString("Logo!".getBytes()));
+		root.appendChild(padded);
+		Element unpadded = document.createElement("img");
+		unpadded.setAttribute("src", "data:image/gif;base64," + Base64.getEncoder().withoutPadding().encodeToString("Logo!".getBytes()));
+		root.appendChild(unpadded);
+
+		XmlByteExtractor extractor = new XmlByteExtractor(document).setDeduplicator(new DataUriDeduplicator());
+		assertFalse(extractor.extractImage().get(1).isShared());
+
+		extractor.setDeduplicator(new DataUriDeduplicator(DataUriDeduplicator.Mode.DECODED, 10));
+		List<XmlByteExtractor.Description> result = extractor.extractImage();
+		assertSame(result.get(1).getData(), result.get(0).getData());
+		assertEquals(result.get(1).getExtension(), "gif");
+
+		// Данные под ключами закодированной строки и декодированных данных учитываются один раз
+		DataUriDeduplicator exact = new DataUriDeduplicator(DataUriDeduplicator.Mode.DECODED, 10, 5);
+		result = extractor.setDeduplicator(exact).extractImage();
+		assertTrue(result.get(1).isShared());
+		assertEquals(exact.getRetainedBytes(), 5);
+		exact.clear();
+		assertEquals(exact.getRetainedBytes(), 0);
+	}
+
+	private String xhtml () {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<html xmlns=\"http://www.w3.org/1999/xhtml\"><body>"
+				+ "<video src=\"data:video/mp4;base64," + Base64.getEncoder().encodeToString("Video".getBytes()) + "\"/>"
+				+ "<p>text <img alt=\"a\" src=\"data:image/png;base64," + Base64.getEncoder().encodeToString("Image".getBytes()) + "\"/></p>"
+				+ "<audio src=\"" + serverUrl + "/image?id=3\"/>"
+				+ "</body></html>";
+	}
+
+	@Test
+	public void testStreamingExtractionFromPath () throws ExtractionException, IOException {
+		Path file = Files.createTempFile("XmlByteExtractorTest", ".xhtml");
+		try {
+			Files.write(file, xhtml().getBytes(StandardCharsets.UTF_8));
+			XmlByteExtractor extractor = new XmlByteExtractor(file);
+			List<XmlByteExtractor.Description> result = extractor.extractAll();
+			assertEquals(result.size(), 3);
+			assertEquals(result.get(0).getType(), "video");
+			assertEquals(result.get(0).getData(), "Video".getBytes());
+			assertNull(result.get(0).getNode());
+			assertEquals(result.get(1).getData(), "Image".getBytes());
+			assertEquals(result.get(2).getData(), "image-3".getBytes());
+
+			// Файл можно читать повторно
+			assertEquals(extractor.extractImage().size(), 1);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testStreamingExtractionFromStreamReadsOnce () throws ExtractionException {
+		XmlByteExtractor extractor = new XmlByteExtractor(new ByteArrayInputStream(xhtml().getBytes(StandardCharsets.UTF_8)));
+		List<XmlByteExtractor.Description> result = extractor.extractImage();
+		assertEquals(result.size(), 1);
+		assertEquals(result.get(0).getData(), "Image".getBytes());
+		try {
+			extractor.extractAll();
+			fail("Stream must be read only once");
+		} catch (ExtractionException e) {
+			assertEquals(e.getMessage(), "Document stream has already been read");
+		}
+
+		result = new XmlByteExtractor(new StringReader(xhtml())).extractAll();
+		assertEquals(result.size(), 3);
+	}
+
+	@Test
+	public void testStreamingExtractionWithXhtmlEntities () throws ExtractionException {
+		String document = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\" \"http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd\">\n"
+				+ "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>&laquo;Title&raquo;</title></head><body>"
+				+ "<p>&nbsp;text&nbsp;&copy; &amp; &#160;<img alt=\"a&amp;b\" src=\"data:image/png;base64,"
+				+ Base64.getEncoder().encodeToString("Image".getBytes()) + "\"/>&mdash;</p>"
+				+ "</body></html>";
+		List<XmlByteExtractor.Description> result = new XmlByteExtractor(new StringReader(document)).extractImage();
+		assertEquals(result.size(), 1);
+		assertEquals(result.get(0).getData(), "Image".getBytes());
+	}
+
+	@Test(expectedExceptions = ExtractionException.class)
+	public void testStreamingExtractionInvalidDocument () throws ExtractionException {
+		new XmlByteExtractor(new StringReader("<html><img src=\"data:image/png;base64,U3RyaW5n\"></html>")).extractAll();
+	}
+
+	@Test
+	public void testExtractToStorage () throws ExtractionException, IOException {
+		Element root = newDocument();
+		Element img = document.createElement("img");
+		img.setAttribute("src", "data:image/png;base64," + Base64.getEncoder().encodeToString("Image".getBytes()));
+		root.appendChild(img);
+		img = document.createElement("img");
+		img.setAttribute("src", serverUrl + "/blob?size=3000000&chunked=true");
+		root.appendChild(img);
+		img = document.createElement("img");
+		img.setAttribute("src", serverUrl + "/image?id=7");
+		root.appendChild(img);
+
+		Path folder = Files.createTempDirectory("XmlByteExtractorTest");
+		ServletContext servletContext = mock(ServletContext.class);
+		when(servletContext.getRealPath("media")).thenReturn(folder.toString());
+		ResourcesHelper storage = new ResourcesHelper("media", servletContext);
+		try {
+			XmlByteExtractor extractor = new XmlByteExtractor(document).setConcurrentFetch(2, 2);
+			List<XmlByteExtractor.Description> result = extractor.extractAll(storage, (index, type, extension) -> new String[]{type, index + "." + extension});
+			assertEquals(result.size(), 3);
+			for (XmlByteExtractor.Description description : result) {
+				assertNull(description.getData());
+				assertEquals(Files.size(description.getPath()), description.getSize());
+			}
+			assertEquals(result.get(0).getPath(), folder.resolve("image").resolve("0.png"));
+			assertEquals(Files.readAllBytes(result.get(0).getPath()), "Image".getBytes());
+			assertEquals(result.get(1).getPath(), folder.resolve("image").resolve("1.jpeg"));
+			assertEquals(result.get(1).getSize(), 3000000);
+			assertEquals(Files.readAllBytes(result.get(2).getPath()), "image-7".getBytes());
+		} finally {
+			FileUtils.deleteDirectory(folder.toFile());
+		}
+	}
+
+	@Test
+	public void testDeduplicateAcrossExtractionModes () throws ExtractionException, IOException {
+		Element root = newDocument();
+		for (int i = 0; i < 2; i++) {
+			Element img = document.createElement("img");
+			img.setAttribute("src", "data:image/png;base64," + Base64.getEncoder().encodeToString("Logo".getBytes()));
+			root.appendChild(img);
+		}
+		DataUriDeduplicator deduplicator = new DataUriDeduplicator();
+		XmlByteExtractor extractor = new XmlByteExtractor(document).setDeduplicator(deduplicator);
+		XmlByteExtractor.StorageNaming naming = (index, type, extension) -> new String[]{type, index + "." + extension};
+		Path first = Files.createTempDirectory("XmlByteExtractorTest");
+		Path second = Files.createTempDirectory("XmlByteExtractorTest");
+		try {
+			assertEquals(extractor.extractImage().get(0).getData(), "Logo".getBytes());
+
+			List<XmlByteExtractor.Description> stored = extractor.extractAll(storage(first), naming);
+			assertFalse(stored.get(0).isShared());
+			assertEquals(stored.get(0).getPath(), first.resolve("image").resolve("0.png"));
+			assertTrue(stored.get(1).isShared());
+			assertEquals(stored.get(1).getPath(), stored.get(0).getPath());
+			assertNull(stored.get(1).getData());
+
+			List<XmlByteExtractor.Description> inMemory = extractor.extractImage();
+			assertTrue(inMemory.get(0).isShared());
+			assertEquals(inMemory.get(0).getData(), "Logo".getBytes());
+			assertNull(inMemory.get(0).getPath());
+
+			stored = extractor.extractAll(storage(second), naming);
+			assertFalse(stored.get(0).isShared());
+			assertEquals(stored.get(0).getPath(), second.resolve("image").resolve("0.png"));
+			assertEquals(Files.readAllBytes(stored.get(1).getPath()), "Logo".getBytes());
+		} finally {
+			FileUtils.deleteDirectory(first.toFile());
+			FileUtils.deleteDirectory(second.toFile());
+		}
+	}
+
+	@Test
+	public void testStoredFilesAreNotSharedBetweenDocuments () throws ExtractionException, IOException {
+		DataUriDeduplicator deduplicator = new DataUriDeduplicator();
+		XmlByteExtractor.StorageNaming naming = (index, type, extension) -> new String[]{type, index + "." + extension};
+		Path folder = Files.createTempDirectory("XmlByteExtractorTest");
+		try {
+			Element root = newDocument();
+			Element img = document.createElement("img");
+			img.setAttribute("src", "data:image/png;base64," + Base64.getEncoder().encodeToString("Logo".getBytes()));
+			root.appendChild(img);
+			new XmlByteExtractor(document).setDeduplicator(deduplicator).extractAll(storage(folder), naming);
+
+			// Второй документ перезаписывает image/0.png другими данными
+			root = newDocument();
+			for (String value : new String[]{"Other", "Logo"}) {
+				img = document.createElement("img");
+				img.setAttribute("src", "data:image/png;base64," + Base64.getEncoder().encodeToString(value.getBytes()));
+				root.appendChild(img);
+			}
+			List<XmlByteExtractor.Description> result = new XmlByteExtractor(document).setDeduplicator(deduplicator)
+					.extractAll(storage(folder), naming);
+			assertFalse(result.get(1).isShared());
+			assertEquals(result.get(1).getPath(), folder.resolve("image").resolve("1.png"));
+			assertEquals(Files.readAllBytes(result.get(0).getPath()), "Other".getBytes());
+			assertEquals(Files.readAllBytes(result.get(1).getPath()), "Logo".getBytes());
+		} finally {
+			FileUtils.deleteDirectory(folder.toFile());
+		}
+	}
+
+	private static ResourcesHelper storage (Path folder) {
+		ServletContext servletContext = mock(ServletContext.class);
+		when(servletContext.getRealPath("media")).thenReturn(folder.toString());
+		return new ResourcesHelper("media", servletContext);
+	}
+
+	@Test
+	public void testStorageStaysInsideRoot () throws ExtractionException, IOException {
+		Path parent = Files.createTempDirectory("XmlByteExtractorTest");
+		Path folder = Files.createDirectory(parent.resolve("res"));
+		ResourcesHelper storage = storage(folder);
+		XmlByteExtractor.StorageNaming naming = (index, type, extension) -> new String[]{type, index + "." + extension};
+		try {
+			Element root = newDocument();
+			Element img = document.createElement("img");
+			img.setAttribute("src", "data:image/../../escaped;base64," + Base64.getEncoder().encodeToString("Image".getBytes()));
+			root.appendChild(img);
+			try {
+				new XmlByteExtractor(document).extractAll(storage, naming);
+				fail("Extension with path separators");
+			} catch (InvalidExtensionException e) {
+				// ожидаемо
+			}
+
+			root = newDocument();
+			img = document.createElement("img");
+			img.setAttribute("src", serverUrl + "/typed?type=" + URLEncoder.encode("image/../../escaped", "UTF-8"));
+			root.appendChild(img);
+			try {
+				new XmlByteExtractor(document).extractAll(storage, naming);
+				fail("Content-Type with path separators");
+			} catch (InvalidExtensionException e) {
+				// ожидаемо
+			}
+
+			root = newDocument();
+			img = document.createElement("img");
+			img.setAttribute("src", serverUrl + "/typed?type=" + URLEncoder.encode("image/png; charset=binary", "UTF-8"));
+			root.appendChild(img);
+			assertEquals(new XmlByteExtractor(document).extractAll(storage, naming).get(0).getPath(), folder.resolve("image").resolve("0.png"));
+
+			// Имя, которое строит вызывающий код, тоже не может выйти за пределы хранилища
+			try {
+				new XmlByteExtractor(document).extractAll(storage, (index, type, extension) -> new String[]{"..", "escaped"});
+				fail("Naming outside of storage");
+			} catch (ExtractionException e) {
+				assertTrue(e.getMessage().contains("outside of storage"));
+			}
+			assertEquals(parent.toFile().list(), new String[]{"res"});
+		} finally {
+			FileUtils.deleteDirectory(parent.toFile());
+		}
+	}
+
+	@Test
+	public void testExtractToStorageRemovesIncompleteFile () throws ExtractionException, IOException {
+		Element root = newDocument();
+		Element img = document.createElement("img");
+		img.setAttribute("src", serverUrl + "/blob?size=100000&chunked=true");
+		root.appendChild(img);
+
+		Path folder = Files.createTempDirectory("XmlByteExtractorTest");
+		ServletContext servletContext = mock(ServletContext.class);
+		when(servletContext.getRealPath("media")).thenReturn(folder.toString());
+		try {
+			new XmlByteExtractor(document)
+					.setFetchPolicy(new FetchPolicy().setMaxBytesPerAsset(1000))
+					.extractAll(new ResourcesHelper("media", servletContext), (index, type, extension) -> new String[]{index + "." + extension});
+			fail("Size limit must be exceeded");
+		} catch (SizeLimitExceededException e) {
+			assertFalse(Files.exists(folder.resolve("0.jpeg")));
+		}
+		try {
+			// Данные ровно по лимиту записываются целиком
+			List<XmlByteExtractor.Description> result = new XmlByteExtractor(document)
+					.setFetchPolicy(new FetchPolicy().setMaxBytesPerAsset(100000).setMaxBytesPerDocument(100000))
+					.extractAll(new ResourcesHelper("media", servletContext), (index, type, extension) -> new String[]{index + "." + extension});
+			assertEquals(result.get(0).getSize(), 100000);
+			assertEquals(Files.size(folder.resolve("0.jpeg")), 100000);
+		} finally {
+			FileUtils.deleteDirectory(folder.toFile());
+		}
+	}
+
+	@Test(expectedExceptions = ExtractionException.class, expectedExceptionsMessageRegExp = "Element <img> has no attribute src")
+	public void testMissingSourceAttribute () throws ExtractionException {
+		Element root = newDocument();
+		root.appendChild(document.createElement("img"));
+		new XmlByteExtractor(document).extractImage();
+	}
+
 	@Test
 	public void testValidDataInUrl () throws ExtractionException {
 		Element root = newDocument();